@@ -0,0 +1,65 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import parser.ComputationNode;
+import spl.lae.LinearAlgebraEngine;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LinearAlgebraEngine.run end to end on a generated tree of square matrices.
+ * run() resolves the tree in place, so every invocation gets a fresh copy of it;
+ * the invocations are long enough for that per-call setup not to skew the score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class EngineBenchmark {
+
+    @Param({"64", "256", "512"})
+    public int size;
+
+    @Param({"1", "4", "8"})
+    public int threads;
+
+    @Param({"4"})
+    public int depth;
+
+    private LinearAlgebraEngine engine;
+    private ComputationNode tree;
+
+    @Setup(Level.Trial)
+    public void setupEngine() {
+        engine = new LinearAlgebraEngine(threads);
+    }
+
+    @Setup(Level.Invocation)
+    public void setupTree() {
+        tree = Matrices.randomTree(depth, size, 42);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public ComputationNode run() {
+        return engine.run(tree);
+    }
+}
@@ -0,0 +1,72 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import scheduling.SchedulingMode;
+import scheduling.TaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TaskExecutor.submitAll on a batch of synthetic tasks, reported per task.
+ * With work = 0 the score is the pure dispatch overhead; comparing it with the
+ * larger work sizes shows how big a task must be before dispatch stops dominating.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class ExecutorBenchmark {
+
+    private static final int TASKS = 256;
+
+    @Param({"1", "4", "8"})
+    public int threads;
+
+    @Param({"FATIGUE_HEAP", "WORK_STEALING", "ADAPTIVE", "VIRTUAL_THREADS"})
+    public SchedulingMode mode;
+
+    @Param({"0", "100", "1000", "10000"}) // Blackhole.consumeCPU tokens per task
+    public long work;
+
+    private TaskExecutor executor;
+    private List<Runnable> tasks;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        executor = TaskExecutor.create(threads, mode);
+        tasks = new ArrayList<>();
+        long tokens = work;
+        for (int i = 0; i < TASKS; i++) {
+            tasks.add(() -> Blackhole.consumeCPU(tokens));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public void submitAll() {
+        executor.submitAll(tasks);
+    }
+}
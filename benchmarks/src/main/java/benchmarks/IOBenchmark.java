@@ -0,0 +1,87 @@
+package benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import memory.SharedMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import parser.ComputationNode;
+import parser.InputParser;
+import parser.OutputWriter;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * InputParser and OutputWriter on an input holding two size x size matrices.
+ * Both run on the calling thread only, so they are parameterized by size alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class IOBenchmark {
+
+    @Param({"64", "256", "1024"})
+    public int size;
+
+    private File directory;
+    private String inputPath;
+    private String outputPath;
+    private double[][] result;
+    private SharedMatrix sharedResult;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory("lae-bench").toFile();
+        inputPath = new File(directory, "input.json").getPath();
+        outputPath = new File(directory, "output.json").getPath();
+        Map<String, Object> input = Map.of("operator", "+",
+                "operands", List.of(Matrices.random(size, size, 1), Matrices.random(size, size, 2)));
+        new ObjectMapper().writeValue(new File(inputPath), input);
+        result = Matrices.random(size, size, 3);
+        sharedResult = new SharedMatrix(result);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        new File(inputPath).delete();
+        new File(outputPath).delete();
+        directory.delete();
+    }
+
+    @Benchmark
+    public ComputationNode parseTree() throws Exception {
+        return new InputParser(false).parse(inputPath);
+    }
+
+    @Benchmark
+    public ComputationNode parseStreaming() throws Exception {
+        return new InputParser(true).parse(inputPath);
+    }
+
+    @Benchmark
+    public void writePretty() throws Exception {
+        OutputWriter.write(result, outputPath);
+    }
+
+    @Benchmark
+    public void writeStreaming() throws Exception {
+        OutputWriter.writeStreaming(sharedResult, outputPath, false);
+    }
+}
@@ -0,0 +1,68 @@
+package benchmarks;
+
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic inputs shared by the benchmarks.
+ */
+final class Matrices {
+
+    private static final ComputationNodeType[] OPERATIONS = {
+            ComputationNodeType.ADD, ComputationNodeType.MULTIPLY, ComputationNodeType.NEGATE, ComputationNodeType.TRANSPOSE
+    };
+
+    private Matrices() {}
+
+    static double[][] random(int rows, int cols, long seed) {
+        Random random = new Random(seed);
+        double[][] matrix = new double[rows][cols];
+        for (double[] row : matrix) {
+            for (int j = 0; j < cols; j++) {
+                row[j] = random.nextDouble() * 2 - 1;
+            }
+        }
+        return matrix;
+    }
+
+    static double[] randomVector(int length, long seed) {
+        return random(1, length, seed)[0];
+    }
+
+    /**
+     * A tree of the given depth over size x size leaves. Every operation keeps the shape
+     * square, so any mix of ADD / MULTIPLY / NEGATE / TRANSPOSE is valid.
+     * Products are scaled down at the leaves so values stay bounded as the tree deepens.
+     */
+    static ComputationNode randomTree(int depth, int size, long seed) {
+        return randomTree(depth, size, new Random(seed));
+    }
+
+    private static ComputationNode randomTree(int depth, int size, Random random) {
+        if (depth == 0) {
+            double[][] leaf = random(size, size, random.nextLong());
+            double scale = 1.0 / Math.sqrt(size);
+            for (double[] row : leaf) {
+                for (int j = 0; j < size; j++) row[j] *= scale;
+            }
+            return new ComputationNode(leaf);
+        }
+        ComputationNodeType type = OPERATIONS[random.nextInt(OPERATIONS.length)];
+        List<ComputationNode> children = new ArrayList<>();
+        switch (type) {
+            case ADD:
+            case MULTIPLY:
+                children.add(randomTree(depth - 1, size, random));
+                children.add(randomTree(depth - 1, size, random));
+                break;
+            default:
+                children.add(randomTree(depth - 1, size, random));
+                break;
+        }
+        return new ComputationNode(type, children);
+    }
+}
@@ -0,0 +1,66 @@
+package benchmarks;
+
+import memory.SharedMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading into and reading out of SharedMatrix storage for a size x size matrix.
+ * readRowMajor runs against one shared matrix, so -t N measures concurrent readers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class MatrixBenchmark {
+
+    @Param({"64", "256", "1024"})
+    public int size;
+
+    private double[][] data;
+    private SharedMatrix loaded;
+
+    /**
+     * Each thread loads into its own matrix; loads are writes and would otherwise just serialize.
+     */
+    @State(Scope.Thread)
+    public static class Target {
+        SharedMatrix matrix = new SharedMatrix();
+    }
+
+    @Setup
+    public void setup() {
+        data = Matrices.random(size, size, 1);
+        loaded = new SharedMatrix(data);
+    }
+
+    @Benchmark
+    public SharedMatrix loadRowMajor(Target target) {
+        target.matrix.loadRowMajor(data);
+        return target.matrix;
+    }
+
+    @Benchmark
+    public SharedMatrix loadColumnMajor(Target target) {
+        target.matrix.loadColumnMajor(data);
+        return target.matrix;
+    }
+
+    @Benchmark
+    public double[][] readRowMajor() {
+        return loaded.readRowMajor();
+    }
+}
@@ -0,0 +1,76 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+import spl.lae.LinearAlgebraEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One large square product through the engine, classic blocked (cutoff = 0) versus Strassen.
+ * The result cache is off so every invocation really multiplies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Xmx8g"})
+public class MultiplyBenchmark {
+
+    @Param({"2048", "4096"})
+    public int size;
+
+    @Param({"4", "8"})
+    public int threads;
+
+    @Param({"0", "1024", "2048"})
+    public int cutoff;
+
+    private LinearAlgebraEngine engine;
+    private double[][] left;
+    private double[][] right;
+    private ComputationNode product;
+
+    @Setup(Level.Trial)
+    public void setupEngine() {
+        engine = new LinearAlgebraEngine(threads);
+        engine.setStrassenCutoff(cutoff);
+        engine.setResultCacheBytes(0);
+        left = Matrices.random(size, size, 1);
+        right = Matrices.random(size, size, 2);
+    }
+
+    @Setup(Level.Iteration)
+    public void setupTree() {
+        List<ComputationNode> operands = new ArrayList<>();
+        operands.add(new ComputationNode(left));
+        operands.add(new ComputationNode(right));
+        product = new ComputationNode(ComputationNodeType.MULTIPLY, operands);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public ComputationNode multiply() {
+        return engine.run(product);
+    }
+}
@@ -0,0 +1,70 @@
+package benchmarks;
+
+import memory.SharedMatrix;
+import memory.SharedVector;
+import memory.VectorOrientation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SharedVector add / dot / vecMatMul on vectors of length size.
+ * The vectors are shared by all benchmark threads, so running with -t N
+ * measures the same calls under lock contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class VectorBenchmark {
+
+    @Param({"64", "256", "1024", "4096"})
+    public int size;
+
+    private SharedVector left;
+    private SharedVector right;
+    private SharedVector column;
+    private SharedVector row;
+    private SharedMatrix matrix;
+
+    @Setup
+    public void setup() {
+        left = new SharedVector(Matrices.randomVector(size, 1), VectorOrientation.ROW_MAJOR);
+        right = new SharedVector(Matrices.randomVector(size, 2), VectorOrientation.ROW_MAJOR);
+        column = new SharedVector(Matrices.randomVector(size, 2), VectorOrientation.COLUMN_MAJOR);
+        row = new SharedVector(Matrices.randomVector(size, 3), VectorOrientation.ROW_MAJOR);
+        // square and scaled by 1/size so repeated products stay bounded
+        double[][] data = Matrices.random(size, size, 4);
+        for (double[] r : data) {
+            for (int j = 0; j < size; j++) r[j] /= size;
+        }
+        matrix = new SharedMatrix(data);
+    }
+
+    @Benchmark
+    public void add() {
+        left.add(right);
+    }
+
+    @Benchmark
+    public double dot() {
+        return left.dot(column);
+    }
+
+    @Benchmark
+    public void vecMatMul() {
+        row.vecMatMul(matrix);
+    }
+}
@@ -0,0 +1,245 @@
+package memory;
+
+import java.util.Arrays;
+
+/**
+ * Cache-blocked matrix product C = A x B.
+ * The right operand is packed once into column panels so every tile streams
+ * through contiguous memory, and the output is split into independent tiles
+ * that can be computed by different workers without any locking.
+ */
+public class BlockedMultiplier {
+
+    public static final int ROW_BLOCK = 64;   // rows of C per tile
+    public static final int COL_BLOCK = 128;  // columns of C per tile (one packed panel)
+    public static final int DEPTH_BLOCK = 256; // shared dimension slice kept hot in L2
+    private static final int PACK_ROWS = 32; // rows of B read together while packing
+
+    private final double[] left;     // A, flat row-major snapshot (numRows x depth)
+    private final double[][] panels; // B packed as panels[cb] = DEPTH x width(cb), row-major
+    private final double[] result; // C, flat row-major; each tile writes a disjoint region
+    private final int numRows;
+    private final int numCols;
+    private final int depth;
+    private final double sign; // -1 when the product is negated in the same pass
+    private final boolean symmetric; // only the upper triangle is computed, then mirrored
+    private final BufferPool pool; // source of result and panels, or null
+    private boolean released = false;
+
+    public BlockedMultiplier(SharedMatrix leftMatrix, SharedMatrix rightMatrix) {
+        this(leftMatrix, rightMatrix, false);
+    }
+
+    public BlockedMultiplier(SharedMatrix leftMatrix, SharedMatrix rightMatrix, boolean negate) {
+        this(leftMatrix, rightMatrix, negate, null);
+    }
+
+    /**
+     * Takes the result, the copy of A and the packed panels from pool; release() gives all but the result back.
+     */
+    public BlockedMultiplier(SharedMatrix leftMatrix, SharedMatrix rightMatrix, boolean negate, BufferPool pool) {
+        this(leftMatrix, rightMatrix, negate, pool, false);
+    }
+
+    /**
+     * With symmetric set, the caller knows C is symmetric (A is the transpose of B, see
+     * SharedMatrix.isTransposeOf): SYRK-style, only tiles reaching the diagonal or above it are
+     * computed, and each copies its upper-triangle entries to their mirror positions below the
+     * diagonal, so about half the multiply-adds are done. The result is the same as the full product.
+     */
+    public BlockedMultiplier(SharedMatrix leftMatrix, SharedMatrix rightMatrix, boolean negate, BufferPool pool,
+                             boolean symmetric) {
+        this.sign = negate ? -1.0 : 1.0;
+        this.pool = pool;
+        this.symmetric = symmetric;
+        this.numRows = leftMatrix.numRows();
+        this.depth = rightMatrix.numRows();
+        this.numCols = rightMatrix.numCols();
+        if (numRows > 0 && leftMatrix.numCols() != depth) {
+            throw new IllegalArgumentException("Matrix multiply: dimensions mismatch");
+        }
+        if (symmetric && numRows != numCols) {
+            throw new IllegalArgumentException("Matrix multiply: a symmetric product must be square");
+        }
+        this.left = allocate(flatSize(numRows, depth));
+        leftMatrix.readRows(0, numRows, left);
+        this.result = allocate(flatSize(numRows, numCols));
+        this.panels = allocatePanels();
+        // reads B a block of rows at a time straight from its storage (a transposed view included),
+        // so B is never materialized as double[][]
+        double[] rows = new double[PACK_ROWS * numCols];
+        for (int k0 = 0; k0 < depth; k0 += PACK_ROWS) {
+            int k1 = Math.min(k0 + PACK_ROWS, depth);
+            rightMatrix.readRows(k0, k1, rows);
+            for (int k = k0; k < k1; k++) {
+                packRow(k, rows, (k - k0) * numCols);
+            }
+        }
+    }
+
+    /**
+     * Product of plain row arrays, used for the leaf products of StrassenMultiplier.
+     */
+    BlockedMultiplier(double[][] left, double[][] right, double sign) {
+        this.sign = sign;
+        this.pool = null;
+        this.symmetric = false;
+        this.numRows = left.length;
+        this.depth = right.length;
+        this.numCols = depth == 0 ? 0 : right[0].length;
+        this.left = new double[flatSize(numRows, depth)];
+        for (int i = 0; i < numRows; i++) {
+            System.arraycopy(left[i], 0, this.left, i * depth, depth);
+        }
+        this.result = allocate(flatSize(numRows, numCols));
+        this.panels = allocatePanels();
+        for (int k = 0; k < depth; k++) {
+            packRow(k, right[k], 0);
+        }
+    }
+
+    private double[][] allocatePanels() {
+        double[][] packed = new double[colBlocks()][];
+        for (int cb = 0; cb < packed.length; cb++) {
+            packed[cb] = allocate(depth * panelWidth(cb));
+        }
+        return packed;
+    }
+
+    private static int flatSize(int rows, int cols) {
+        long size = (long) rows * cols;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Matrix multiply: matrix too large for flat storage");
+        }
+        return (int) size;
+    }
+
+    private double[] allocate(int length) {
+        return pool == null ? new double[length] : pool.take(length);
+    }
+
+    private void packRow(int k, double[] row, int offset) {
+        for (int cb = 0; cb < panels.length; cb++) {
+            int width = panelWidth(cb);
+            System.arraycopy(row, offset + cb * COL_BLOCK, panels[cb], k * width, width);
+        }
+    }
+
+    private int panelWidth(int colBlock) {
+        return Math.min(COL_BLOCK, numCols - colBlock * COL_BLOCK);
+    }
+
+    public int rowBlocks() {
+        return (numRows + ROW_BLOCK - 1) / ROW_BLOCK;
+    }
+
+    public int colBlocks() {
+        return (numCols + COL_BLOCK - 1) / COL_BLOCK;
+    }
+
+    /**
+     * False for a tile of a symmetric product that lies wholly below the diagonal: the tiles
+     * across the diagonal fill it in, so it has no task of its own.
+     */
+    public boolean needsTile(int rowBlock, int colBlock) {
+        return !symmetric || colBlock * COL_BLOCK + panelWidth(colBlock) > rowBlock * ROW_BLOCK;
+    }
+
+    /**
+     * Multiply-adds in one output tile (edge tiles are smaller, and a symmetric product skips
+     * the part of a tile below the diagonal).
+     */
+    public long tileWork(int rowBlock, int colBlock) {
+        int i0 = rowBlock * ROW_BLOCK;
+        int i1 = Math.min(i0 + ROW_BLOCK, numRows);
+        int j0 = colBlock * COL_BLOCK;
+        long entries = 0;
+        for (int i = i0; i < i1; i++) {
+            entries += Math.max(0, j0 + panelWidth(colBlock) - firstColumn(i, j0));
+        }
+        return entries * depth;
+    }
+
+    // first column of row i a tile starting at column j0 computes: the diagonal or beyond, if symmetric
+    private int firstColumn(int i, int j0) {
+        return symmetric ? Math.max(j0, i) : j0;
+    }
+
+    /**
+     * Computes one output tile. Tiles never overlap, so tiles may run concurrently; neither do the
+     * mirrored entries a symmetric tile writes below the diagonal.
+     */
+    public void computeTile(int rowBlock, int colBlock) {
+        int i0 = rowBlock * ROW_BLOCK;
+        int i1 = Math.min(i0 + ROW_BLOCK, numRows);
+        int j0 = colBlock * COL_BLOCK;
+        int j1 = j0 + Math.min(COL_BLOCK, numCols - j0);
+        int width = j1 - j0;
+        double[] panel = panels[colBlock];
+        VectorKernels kernels = VectorKernels.get();
+        for (int i = i0; i < i1; i++) {
+            int js = firstColumn(i, j0);
+            if (js < j1) Arrays.fill(result, i * numCols + js, i * numCols + j1, 0.0); // a pooled result starts dirty
+        }
+
+        // k-slab outermost so the DEPTH_BLOCK x width slice of the panel is reused by every row of the tile
+        for (int k0 = 0; k0 < depth; k0 += DEPTH_BLOCK) {
+            int k1 = Math.min(k0 + DEPTH_BLOCK, depth);
+            for (int i = i0; i < i1; i++) {
+                int js = firstColumn(i, j0);
+                if (js >= j1) continue;
+                int aOff = i * depth;
+                int cOff = i * numCols + js;
+                for (int k = k0; k < k1; k++) {
+                    kernels.axpy(sign * left[aOff + k], panel, k * width + js - j0, result, cOff, j1 - js);
+                }
+            }
+        }
+        if (!symmetric) return;
+        // C[j][i] = C[i][j] for the entries above the diagonal; row by row of the lower part, so writes stay contiguous
+        for (int j = Math.max(j0, i0 + 1); j < j1; j++) {
+            for (int i = i0; i < Math.min(i1, j); i++) {
+                result[j * numCols + i] = result[i * numCols + j];
+            }
+        }
+    }
+
+    /**
+     * C as rows; a copy of the flat result.
+     */
+    public double[][] getResult() {
+        double[][] rows = new double[numRows][];
+        for (int i = 0; i < numRows; i++) {
+            rows[i] = Arrays.copyOfRange(result, i * numCols, (i + 1) * numCols);
+        }
+        return rows;
+    }
+
+    /**
+     * C in row-major order, numRows() x numCols(), without copying.
+     */
+    public double[] getFlatResult() {
+        return result;
+    }
+
+    public int numRows() {
+        return numRows;
+    }
+
+    public int numCols() {
+        return numCols;
+    }
+
+    /**
+     * Gives the copy of A and the packed panels back to the pool; call once every tile has been computed.
+     */
+    public synchronized void release() {
+        if (pool == null || released) return;
+        released = true;
+        pool.give(left);
+        for (int cb = 0; cb < panels.length; cb++) {
+            pool.give(panels[cb]);
+            panels[cb] = null;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package memory;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Flat double[] buffers kept for reuse, keyed by length: every matrix of a given shape
+ * (and its transpose) needs the same length, so a long tree keeps asking for the same
+ * few sizes. Buffers are handed out with unspecified contents.
+ * Holds at most capacityBytes; a buffer given back beyond that is left to the GC.
+ */
+public class BufferPool {
+
+    private final Map<Integer, ArrayDeque<double[]>> free = new HashMap<>();
+    private final long capacityBytes;
+    private long pooledBytes = 0;
+
+    // lifetime totals, see getReport()
+    private long takenBytes = 0;
+    private long reusedBytes = 0;
+    private long returnedBytes = 0;
+
+    public BufferPool(long capacityBytes) {
+        this.capacityBytes = Math.max(capacityBytes, 0);
+    }
+
+    /**
+     * A buffer of exactly length elements, reused if one is free. Its contents are unspecified.
+     */
+    public double[] take(int length) {
+        synchronized (this) {
+            takenBytes += bytes(length);
+            ArrayDeque<double[]> buffers = free.get(length);
+            double[] buffer = buffers == null ? null : buffers.pollLast();
+            if (buffer != null) {
+                pooledBytes -= bytes(length);
+                reusedBytes += bytes(length);
+                return buffer;
+            }
+        }
+        return new double[length]; // allocated outside the lock
+    }
+
+    /**
+     * Hands a buffer back; the caller must not touch it afterwards.
+     */
+    public synchronized void give(double[] buffer) {
+        if (buffer == null || buffer.length == 0) return;
+        returnedBytes += bytes(buffer.length);
+        if (pooledBytes + bytes(buffer.length) > capacityBytes) return;
+        free.computeIfAbsent(buffer.length, k -> new ArrayDeque<>()).addLast(buffer);
+        pooledBytes += bytes(buffer.length);
+    }
+
+    public synchronized long getReusedBytes() {
+        return reusedBytes;
+    }
+
+    private static long bytes(int length) {
+        return (long) length * Double.BYTES;
+    }
+
+    public synchronized String getReport() {
+        return String.format("Buffer pool: %d MB taken, %d MB reused, %d MB returned, %d MB pooled (cap %d MB)\n",
+                takenBytes >> 20, reusedBytes >> 20, returnedBytes >> 20, pooledBytes >> 20, capacityBytes >> 20);
+    }
+}
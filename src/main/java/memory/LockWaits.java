@@ -0,0 +1,23 @@
+package memory;
+
+/**
+ * Time each thread has spent blocked on SharedVector locks. Only contended acquisitions
+ * are timed: an uncontended lock is taken with tryLock and costs no clock reads.
+ */
+public final class LockWaits {
+
+    private static final ThreadLocal<long[]> WAITED = ThreadLocal.withInitial(() -> new long[1]);
+
+    private LockWaits() {}
+
+    /**
+     * Total nanoseconds the calling thread has waited so far; diff two readings to time a region.
+     */
+    public static long currentThreadNanos() {
+        return WAITED.get()[0];
+    }
+
+    static void record(long nanos) {
+        WAITED.get()[0] += nanos;
+    }
+}
@@ -0,0 +1,49 @@
+package memory;
+
+/**
+ * Plain loops; the JIT may still auto-vectorize some of them.
+ */
+class ScalarKernels extends VectorKernels {
+
+    @Override
+    public void add(double[] a, int aOff, double[] b, int bOff, int len) {
+        for (int i = 0; i < len; i++) {
+            a[aOff + i] += b[bOff + i];
+        }
+    }
+
+    @Override
+    public void negate(double[] a, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            a[i] = -a[i];
+        }
+    }
+
+    @Override
+    public double dot(double[] a, int aOff, double[] b, int bOff, int len) {
+        double sum = 0;
+        for (int i = 0; i < len; i++) {
+            sum += a[aOff + i] * b[bOff + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, int xOff, double[] y, int yOff, int len) {
+        for (int i = 0; i < len; i++) {
+            y[yOff + i] += alpha * x[xOff + i];
+        }
+    }
+
+    @Override
+    public void scale(double alpha, double[] x, int xOff, double[] y, int yOff, int len) {
+        for (int i = 0; i < len; i++) {
+            y[yOff + i] = alpha * x[xOff + i];
+        }
+    }
+
+    @Override
+    public String describe() {
+        return "scalar";
+    }
+}
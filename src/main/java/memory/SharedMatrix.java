@@ -1,8 +1,33 @@
 package memory;
 
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A matrix stored in one contiguous double[].
+ * The stored vectors (rows when ROW_MAJOR, columns when COLUMN_MAJOR) are consecutive
+ * slices of that array, exposed as SharedVector views. Views share a small set of
+ * striped locks instead of owning one lock each.
+ * Every locked write through a view bumps a matrix-level epoch, which lets whole-matrix
+ * reads run optimistically without taking any lock.
+ */
 public class SharedMatrix {
 
-    private volatile SharedVector[] vectors = {}; // underlying vectors
+    private static final int LOCK_STRIPES = 64;
+    private static final int TRANSPOSE_BLOCK = 32; // stored vectors scattered together by a layout-changing copy
+
+    private double[] data = new double[0]; // flat storage, stored vector i starts at i * vectorLength
+    private int vectorLength = 0; // elements per stored vector
+    private volatile SharedVector[] vectors = {}; // views over data; published last
+
+    private final AtomicInteger activeWriters = new AtomicInteger(0); // views currently write-locked
+    private final AtomicLong epoch = new AtomicLong(0); // bumped when a write starts and when it ends
+    private volatile boolean detached = false; // a view stopped aliasing data (see SharedVector.vecMatMul)
+    private volatile boolean ownsData = true; // false for a transposedView: data belongs to another matrix
 
     public SharedMatrix() {
         // TODO: initialize empty matrix
@@ -13,7 +38,7 @@ public class SharedMatrix {
         // TODO: construct matrix as row-major SharedVectors
         if (matrix == null || matrix.length == 0) {
             this.vectors = new SharedVector[0];
-        } 
+        }
         else {
             loadRowMajor(matrix);
         }
@@ -21,53 +46,220 @@ public class SharedMatrix {
 
     public void loadRowMajor(double[][] matrix) {
         // TODO: replace internal data with new row-major matrix
-        //not sure we need this, already chacking in the constructor
+        loadRowMajor(matrix, null);
+    }
+
+    /**
+     * Like loadRowMajor(matrix), with the flat storage taken from pool (or freshly allocated if pool is null).
+     */
+    public void loadRowMajor(double[][] matrix, BufferPool pool) {
         if (matrix == null || matrix.length == 0) {
             this.vectors = new SharedVector[0];
         }
         else {
-        SharedVector[] newVectors = new SharedVector[matrix.length];
-        for (int i = 0; i < matrix.length; i++) {
-            newVectors[i] = new SharedVector(matrix[i].clone(), VectorOrientation.ROW_MAJOR);
-        }
-        this.vectors = newVectors;
+            int numRows = matrix.length;
+            int numCols = matrix[0].length;
+            double[] flat = allocate(flatSize(numRows, numCols), pool);
+            for (int i = 0; i < numRows; i++) {
+                if (matrix[i].length != numCols) {
+                    throw new IllegalArgumentException("Matrix load: inconsistent row sizes");
+                }
+                System.arraycopy(matrix[i], 0, flat, i * numCols, numCols);
+            }
+            publish(flat, numRows, numCols, VectorOrientation.ROW_MAJOR);
         }
     }
 
     public void loadColumnMajor(double[][] matrix) {
         // TODO: replace internal data with new column-major matrix
-        //not sure we need this, already chacking in the constructor
+        loadColumnMajor(matrix, null);
+    }
+
+    /**
+     * Like loadColumnMajor(matrix), with the flat storage taken from pool (or freshly allocated if pool is null).
+     */
+    public void loadColumnMajor(double[][] matrix, BufferPool pool) {
         if (matrix == null || matrix.length == 0 || matrix[0].length == 0) {
             this.vectors = new SharedVector[0];
         }
         else {
             int numRows = matrix.length;
             int numCols = matrix[0].length;
-            SharedVector[] newVectors = new SharedVector[numCols];
-
-            for (int j = 0; j < numCols; j++) {
-                double[] column = new double[numRows];
-                for (int i = 0; i < numRows; i++) {
-                    column[i] = matrix[i][j];
+            double[] flat = allocate(flatSize(numRows, numCols), pool);
+            for (int i = 0; i < numRows; i++) {
+                double[] row = matrix[i];
+                for (int j = 0; j < numCols; j++) {
+                    flat[j * numRows + i] = row[j];
                 }
+            }
+            publish(flat, numCols, numRows, VectorOrientation.COLUMN_MAJOR);
+        }
+    }
 
-                newVectors[j] = new SharedVector(column, VectorOrientation.COLUMN_MAJOR);
+    /**
+     * Adopts flat storage as is, without copying: the caller must not keep using the array.
+     * A COLUMN_MAJOR array is kept column-major, so no transposing copy is needed.
+     */
+    public void loadFlat(double[] flat, int numRows, int numCols, VectorOrientation orientation) {
+        if (flat.length != (long) numRows * numCols) {
+            throw new IllegalArgumentException("Matrix load: flat data does not match the dimensions");
+        }
+        if (orientation == VectorOrientation.ROW_MAJOR) {
+            publish(flat, numRows, numCols, orientation);
+        }
+        else {
+            publish(flat, numCols, numRows, orientation);
+        }
+    }
+
+    /**
+     * A copy of this matrix stored in the given orientation, in storage taken from pool.
+     * Same-orientation copies are one bulk copy of the flat data.
+     */
+    public SharedMatrix copy(VectorOrientation orientation, BufferPool pool) {
+        SharedMatrix copy = new SharedMatrix();
+        SharedVector[] currentVecs = this.vectors;
+        if (currentVecs.length == 0) return copy;
+        int numRows = numRows();
+        int numCols = numCols();
+        acquireAllVectorReadLocks(currentVecs);
+        try {
+            if (detached) {
+                double[][] rows = readRowMajor();
+                if (orientation == VectorOrientation.ROW_MAJOR) copy.loadRowMajor(rows, pool);
+                else copy.loadColumnMajor(rows, pool);
+                return copy;
             }
-            this.vectors = newVectors;
+            double[] src = this.data;
+            double[] flat = allocate(src.length, pool);
+            if (currentVecs[0].getOrientation() == orientation) {
+                System.arraycopy(src, 0, flat, 0, src.length);
+            }
+            else {
+                // same elements, other layout: stored vector i becomes element i of every new vector,
+                // a block of stored vectors at a time so the writes stay contiguous
+                int numVectors = currentVecs.length;
+                int len = this.vectorLength;
+                for (int i0 = 0; i0 < numVectors; i0 += TRANSPOSE_BLOCK) {
+                    int i1 = Math.min(i0 + TRANSPOSE_BLOCK, numVectors);
+                    for (int j = 0; j < len; j++) {
+                        int out = j * numVectors;
+                        for (int i = i0; i < i1; i++) {
+                            flat[out + i] = src[i * len + j];
+                        }
+                    }
+                }
+            }
+            copy.loadFlat(flat, numRows, numCols, orientation);
+            return copy;
+        }
+        finally {
+            releaseAllVectorReadLocks(currentVecs);
         }
     }
 
+    /**
+     * Hands the flat storage to pool and leaves this matrix empty. Only for matrices that
+     * nothing reads any more: views obtained earlier would alias the recycled buffer.
+     */
+    public void recycle(BufferPool pool) {
+        SharedVector[] currentVecs = this.vectors;
+        acquireAllVectorWriteLocks(currentVecs);
+        try {
+            double[] flat = this.data;
+            this.vectors = new SharedVector[0];
+            this.data = new double[0];
+            this.vectorLength = 0;
+            if (!detached && ownsData) pool.give(flat);
+        }
+        finally {
+            releaseAllVectorWriteLocks(currentVecs);
+        }
+    }
+
+    private static double[] allocate(int size, BufferPool pool) {
+        return pool == null ? new double[size] : pool.take(size);
+    }
+
+    private static int flatSize(int numVectors, int vectorLength) {
+        long size = (long) numVectors * vectorLength;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Matrix load: matrix too large for flat storage");
+        }
+        return (int) size;
+    }
+
+    /**
+     * Installs new flat storage and rebuilds the vector views over it.
+     */
+    private void publish(double[] flat, int numVectors, int length, VectorOrientation orientation) {
+        ReadWriteLock[] newStripes = new ReadWriteLock[Math.min(numVectors, LOCK_STRIPES)];
+        for (int s = 0; s < newStripes.length; s++) {
+            newStripes[s] = new ReentrantReadWriteLock();
+        }
+        SharedVector[] newVectors = new SharedVector[numVectors];
+        for (int i = 0; i < numVectors; i++) {
+            newVectors[i] = new SharedVector(flat, i * length, length, orientation, newStripes[i % newStripes.length], this);
+        }
+        epoch.incrementAndGet();
+        this.data = flat;
+        this.vectorLength = length;
+        this.detached = false;
+        this.ownsData = true;
+        this.vectors = newVectors;
+    }
+
+    /**
+     * The transpose of this matrix as a view over the same flat storage: nothing is copied,
+     * the stored vectors are just read in the other orientation. The view shares no locks with
+     * this matrix, so neither may be written while the view is in use; recycling the view
+     * leaves the storage to this matrix.
+     */
+    public SharedMatrix transposedView() {
+        SharedVector[] currentVecs = this.vectors;
+        if (detached) {
+            SharedMatrix copy = copy(getOrientation(), null);
+            copy.transpose();
+            return copy;
+        }
+        SharedMatrix view = new SharedMatrix();
+        if (currentVecs.length == 0) return view;
+        VectorOrientation flipped = getOrientation() == VectorOrientation.ROW_MAJOR
+                ? VectorOrientation.COLUMN_MAJOR : VectorOrientation.ROW_MAJOR;
+        view.publish(this.data, currentVecs.length, this.vectorLength, flipped);
+        view.ownsData = false;
+        return view;
+    }
+
+    /**
+     * True if this matrix reads another matrix's storage (see transposedView), so it must not be written.
+     */
+    public boolean isView() {
+        return !ownsData;
+    }
+
     public double[][] readRowMajor() {
         // TODO: return matrix contents as a row-major double[][]
         SharedVector[] currentVecs = this.vectors;
-        
+
         if (currentVecs == null || currentVecs.length == 0) {
             double[][] matrix = new double[0][0];
             return matrix ;
         }
-        
+
+        if (!detached) {
+            double[][] snapshot = tryOptimisticRead(currentVecs);
+            if (snapshot != null) {
+                return snapshot;
+            }
+        }
+
         acquireAllVectorReadLocks(currentVecs);
         try {
+            if (!detached) {
+                // every stripe is read-locked, so the flat data is stable
+                return copyFlat(currentVecs);
+            }
             VectorOrientation currentOrientation = currentVecs[0].getOrientation();
             if (currentOrientation == VectorOrientation.ROW_MAJOR) {
                 int numRows = currentVecs.length;
@@ -79,7 +271,7 @@ public class SharedMatrix {
                         matrix[i][j] = currentVecs[i].get(j);
                     }
                 }
-                return matrix;  
+                return matrix;
             }
             else {
                 int numCols = currentVecs.length;
@@ -91,12 +283,223 @@ public class SharedMatrix {
                         matrix[i][j] = currentVecs[j].get(i);
                     }
                 }
-                return matrix;  
-            }    
+                return matrix;
+            }
         }
         finally {
             releaseAllVectorReadLocks(currentVecs);
-        }      
+        }
+    }
+
+    /**
+     * Copies the matrix without locking and validates the copy against the write epoch,
+     * like a StampedLock optimistic read. Returns null if a writer was active or interfered.
+     */
+    private double[][] tryOptimisticRead(SharedVector[] currentVecs) {
+        long stamp = epoch.get();
+        if (activeWriters.get() != 0) {
+            return null;
+        }
+        double[][] snapshot = copyFlat(currentVecs);
+        VarHandle.acquireFence();
+        if (activeWriters.get() != 0 || epoch.get() != stamp) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    private double[][] copyFlat(SharedVector[] currentVecs) {
+        double[] flat = this.data;
+        int len = this.vectorLength;
+        int numVectors = currentVecs.length;
+        if (currentVecs[0].orientationUnlocked() == VectorOrientation.ROW_MAJOR) {
+            double[][] matrix = new double[numVectors][];
+            for (int i = 0; i < numVectors; i++) {
+                matrix[i] = Arrays.copyOfRange(flat, i * len, (i + 1) * len);
+            }
+            return matrix;
+        }
+        double[][] matrix = new double[len][numVectors];
+        for (int j = 0; j < numVectors; j++) {
+            int base = j * len;
+            for (int i = 0; i < len; i++) {
+                matrix[i][j] = flat[base + i];
+            }
+        }
+        return matrix;
+    }
+
+    // Called by views around every locked write.
+    void beginWrite() {
+        activeWriters.incrementAndGet();
+        epoch.incrementAndGet();
+    }
+
+    void endWrite() {
+        epoch.incrementAndGet();
+        activeWriters.decrementAndGet();
+    }
+
+    void markDetached() {
+        this.detached = true;
+    }
+
+    /**
+     * Transposes the matrix by swapping its orientation; the flat data is not moved.
+     */
+    public void transpose() {
+        SharedVector[] currentVecs = this.vectors;
+        acquireAllVectorWriteLocks(currentVecs);
+        try {
+            for (SharedVector v : currentVecs) {
+                v.transpose();
+            }
+        }
+        finally {
+            releaseAllVectorWriteLocks(currentVecs);
+        }
+    }
+
+    public int numRows() {
+        SharedVector[] currentVecs = this.vectors;
+        if (currentVecs.length == 0) return 0;
+        return getOrientation() == VectorOrientation.ROW_MAJOR ? currentVecs.length : currentVecs[0].length();
+    }
+
+    public int numCols() {
+        SharedVector[] currentVecs = this.vectors;
+        if (currentVecs.length == 0) return 0;
+        return getOrientation() == VectorOrientation.ROW_MAJOR ? currentVecs[0].length() : currentVecs.length;
+    }
+
+    /**
+     * Copies logical row `row` into dst (at least numCols() long) without materializing the matrix.
+     * Uses the same optimistic epoch check as readRowMajor.
+     */
+    public void readRow(int row, double[] dst) {
+        SharedVector[] currentVecs = this.vectors;
+        if (row < 0 || row >= numRows()) {
+            throw new IllegalArgumentException("Matrix readRow: row index out of bounds");
+        }
+        if (!detached) {
+            long stamp = epoch.get();
+            if (activeWriters.get() == 0) {
+                copyRow(currentVecs, row, dst);
+                VarHandle.acquireFence();
+                if (activeWriters.get() == 0 && epoch.get() == stamp) return;
+            }
+        }
+        acquireAllVectorReadLocks(currentVecs);
+        try {
+            if (!detached) {
+                copyRow(currentVecs, row, dst);
+            }
+            else if (currentVecs[0].getOrientation() == VectorOrientation.ROW_MAJOR) {
+                for (int j = 0; j < currentVecs[row].length(); j++) dst[j] = currentVecs[row].get(j);
+            }
+            else {
+                for (int j = 0; j < currentVecs.length; j++) dst[j] = currentVecs[j].get(row);
+            }
+        }
+        finally {
+            releaseAllVectorReadLocks(currentVecs);
+        }
+    }
+
+    /**
+     * Copies logical rows [from, to) into dst, row-major (at least (to - from) * numCols() long).
+     * Column-major storage is gathered a block of rows at a time, reading each stored vector's
+     * segment contiguously, so a transposed view streams about as fast as row-major storage.
+     */
+    public void readRows(int from, int to, double[] dst) {
+        SharedVector[] currentVecs = this.vectors;
+        if (from < 0 || to > numRows() || from > to) {
+            throw new IllegalArgumentException("Matrix readRows: row range out of bounds");
+        }
+        if (from == to) return;
+        if (!detached) {
+            long stamp = epoch.get();
+            if (activeWriters.get() == 0) {
+                copyRows(currentVecs, from, to, dst);
+                VarHandle.acquireFence();
+                if (activeWriters.get() == 0 && epoch.get() == stamp) return;
+            }
+        }
+        acquireAllVectorReadLocks(currentVecs);
+        try {
+            if (!detached) {
+                copyRows(currentVecs, from, to, dst);
+                return;
+            }
+        }
+        finally {
+            releaseAllVectorReadLocks(currentVecs);
+        }
+        double[] row = new double[numCols()];
+        for (int i = from; i < to; i++) {
+            readRow(i, row);
+            System.arraycopy(row, 0, dst, (i - from) * row.length, row.length);
+        }
+    }
+
+    /**
+     * True if this matrix equals other's transpose element for element, as T(X) and X do, or a
+     * symmetric matrix and itself; their product is then symmetric. A transposed view of other's
+     * storage is recognized without reading it; otherwise rows are compared a block at a time
+     * and the first difference ends the check.
+     */
+    public boolean isTransposeOf(SharedMatrix other) {
+        int rows = numRows();
+        int cols = numCols();
+        if (rows != other.numCols() || cols != other.numRows()) return false;
+        if (rows == 0 || cols == 0) return true;
+        if (data == other.data && !detached && !other.detached && getOrientation() != other.getOrientation()) {
+            return true;
+        }
+        SharedMatrix transposed = other.transposedView();
+        int block = Math.min(TRANSPOSE_BLOCK, rows);
+        double[] mine = new double[block * cols];
+        double[] theirs = new double[block * cols];
+        for (int i0 = 0; i0 < rows; i0 += block) {
+            int i1 = Math.min(i0 + block, rows);
+            readRows(i0, i1, mine);
+            transposed.readRows(i0, i1, theirs);
+            int length = (i1 - i0) * cols;
+            if (!Arrays.equals(mine, 0, length, theirs, 0, length)) return false;
+        }
+        return true;
+    }
+
+    private void copyRows(SharedVector[] currentVecs, int from, int to, double[] dst) {
+        double[] flat = this.data;
+        int len = this.vectorLength;
+        if (currentVecs[0].orientationUnlocked() == VectorOrientation.ROW_MAJOR) {
+            System.arraycopy(flat, from * len, dst, 0, (to - from) * len);
+            return;
+        }
+        int numCols = currentVecs.length;
+        for (int i0 = from; i0 < to; i0 += TRANSPOSE_BLOCK) {
+            int i1 = Math.min(i0 + TRANSPOSE_BLOCK, to);
+            for (int j = 0; j < numCols; j++) {
+                int base = j * len;
+                for (int i = i0; i < i1; i++) {
+                    dst[(i - from) * numCols + j] = flat[base + i];
+                }
+            }
+        }
+    }
+
+    private void copyRow(SharedVector[] currentVecs, int row, double[] dst) {
+        double[] flat = this.data;
+        int len = this.vectorLength;
+        if (currentVecs[0].orientationUnlocked() == VectorOrientation.ROW_MAJOR) {
+            System.arraycopy(flat, row * len, dst, 0, len);
+        }
+        else {
+            for (int j = 0; j < currentVecs.length; j++) {
+                dst[j] = flat[j * len + row];
+            }
+        }
     }
 
     public SharedVector get(int index) {
@@ -121,32 +524,32 @@ public class SharedMatrix {
     }
 
     private void acquireAllVectorReadLocks(SharedVector[] vecs) {
-        // TODO: acquire read lock for each vector
-        int len = vecs.length;
+        // locks are per stripe, not per vector: vectors 0..LOCK_STRIPES-1 hold each stripe once
+        int len = Math.min(vecs.length, LOCK_STRIPES);
         for(int i = 0; i < len; i++) {
             if(vecs[i] != null) vecs[i].readLock();
         }
     }
 
     private void releaseAllVectorReadLocks(SharedVector[] vecs) {
-        // TODO: release read locks
-        int len = vecs.length;
+        // per stripe, not per vector, in reverse order
+        int len = Math.min(vecs.length, LOCK_STRIPES);
         for(int i = len - 1; i >= 0; i--) {
             if(vecs[i] != null) vecs[i].readUnlock();
         }
     }
 
     private void acquireAllVectorWriteLocks(SharedVector[] vecs) {
-        // TODO: acquire write lock for each vector
-        int len = vecs.length;
+        // per stripe, not per vector, as for the read locks
+        int len = Math.min(vecs.length, LOCK_STRIPES);
         for(int i = 0; i < len; i++) {
             if(vecs[i] != null) vecs[i].writeLock();
         }
     }
 
     private void releaseAllVectorWriteLocks(SharedVector[] vecs) {
-        // TODO: release write locks
-        int len = vecs.length;
+        // per stripe, not per vector, in reverse order
+        int len = Math.min(vecs.length, LOCK_STRIPES);
         for(int i = len - 1; i >= 0; i--) {
             if(vecs[i] != null) vecs[i].writeUnlock();
         }
@@ -4,39 +4,57 @@ import java.util.concurrent.locks.ReadWriteLock;
 
 public class SharedVector {
 
-    private double[] vector;
+    private double[] vector; // backing array, possibly the flat storage of a SharedMatrix
+    private int offset; // index of element 0 inside the backing array
+    private int length;
     private VectorOrientation orientation;
-    private ReadWriteLock lock = new java.util.concurrent.locks.ReentrantReadWriteLock();
+    private ReadWriteLock lock;
+    private SharedMatrix owner; // matrix whose storage this vector views, null if standalone
 
     public SharedVector(double[] vector, VectorOrientation orientation) {
         // TODO: store vector data and its orientation
         if (vector == null) {
         this.vector = new double[0];
-        } 
+        }
         else {
             this.vector = vector;
         }
+        this.offset = 0;
+        this.length = this.vector.length;
+        this.orientation = orientation;
+        this.lock = new java.util.concurrent.locks.ReentrantReadWriteLock();
+    }
+
+    /**
+     * A view over a slice of a SharedMatrix's flat storage, guarded by one of the matrix's lock stripes.
+     */
+    SharedVector(double[] data, int offset, int length, VectorOrientation orientation, ReadWriteLock lock, SharedMatrix owner) {
+        this.vector = data;
+        this.offset = offset;
+        this.length = length;
         this.orientation = orientation;
+        this.lock = lock;
+        this.owner = owner;
     }
 
     public double get(int index) {
         // TODO: return element at index (read-locked)
         this.readLock();
-        try { 
+        try {
             // What are we doing if index is out of vector length?
-            if( index >= vector.length) {
+            if(index < 0 || index >= length) {
                 throw new IllegalArgumentException("Vector get: index is out of vector length");
             }
-            return vector[index]; 
-        } 
+            return vector[offset + index];
+        }
         finally { this.readUnlock(); }
     }
 
     public int length() {
         // TODO: return vector length
         this.readLock();
-        try { 
-            return vector.length;
+        try {
+            return length;
         }
         finally { this.readUnlock(); }
     }
@@ -44,25 +62,40 @@ public class SharedVector {
     public VectorOrientation getOrientation() {
          // TODO: return vector orientation
         this.readLock();
-        try { 
+        try {
             return orientation;
         }
         finally { this.readUnlock(); }
     }
 
+    // For SharedMatrix's optimistic reads, which validate against the write epoch instead of locking.
+    VectorOrientation orientationUnlocked() {
+        return orientation;
+    }
+
     public void writeLock() {
         // TODO: acquire write lock
-        lock.writeLock().lock();
+        if (!lock.writeLock().tryLock()) {
+            long start = System.nanoTime();
+            lock.writeLock().lock();
+            LockWaits.record(System.nanoTime() - start);
+        }
+        if (owner != null) owner.beginWrite();
     }
 
     public void writeUnlock() {
         // TODO: release write lock
+        if (owner != null) owner.endWrite();
         lock.writeLock().unlock();
     }
 
     public void readLock() {
         // TODO: acquire read lock
-        lock.readLock().lock();
+        if (!lock.readLock().tryLock()) {
+            long start = System.nanoTime();
+            lock.readLock().lock();
+            LockWaits.record(System.nanoTime() - start);
+        }
     }
 
     public void readUnlock() {
@@ -72,27 +105,28 @@ public class SharedVector {
 
     public void transpose() {
         // TODO: transpose vector
-        lock.writeLock().lock(); 
+        this.writeLock();
         try {
             if (this.orientation == VectorOrientation.ROW_MAJOR)
             {
                 this.orientation = VectorOrientation.COLUMN_MAJOR;
-            } 
+            }
             else {
                 this.orientation = VectorOrientation.ROW_MAJOR;
             }
-        } 
+        }
         finally {
-            lock.writeLock().unlock();
+            this.writeUnlock();
         }
     }
 
     public void add(SharedVector other) {
         // TODO: add two vectors
-        int thisId = System.identityHashCode(this);
-        int otherId = System.identityHashCode(other);
+        // order by lock, not by vector: views of one matrix may share a lock stripe
+        int thisId = System.identityHashCode(this.lock);
+        int otherId = System.identityHashCode(other.lock);
         //avoiding deadlock
-        if(thisId > otherId) { 
+        if(thisId > otherId) {
             other.readLock();
             this.writeLock();
         }
@@ -102,16 +136,14 @@ public class SharedVector {
         }
 
         try {
-            if (this.vector.length != other.vector.length) 
+            if (this.length != other.length)
                 throw new IllegalArgumentException("Vector add: dimensions mismatch");
             // if same length but different orientation should we do transpose? Itay said no need
-            for (int i = 0; i < vector.length; i++) {
-                this.vector[i] += other.vector[i];
-            }
-        } 
+            VectorKernels.get().add(this.vector, this.offset, other.vector, other.offset, length);
+        }
         //avoiding deadlock
         finally {
-            if(thisId > otherId) { 
+            if(thisId > otherId) {
                 other.readUnlock();
                 this.writeUnlock();
             }
@@ -126,10 +158,8 @@ public class SharedVector {
         // TODO: negate vector
         this.writeLock();
         try {
-            for (int i = 0; i < vector.length; i++) {
-                this.vector[i] = -this.vector[i];
-            }
-        } 
+            VectorKernels.get().negate(this.vector, offset, length);
+        }
         finally {
             this.writeUnlock();
         }
@@ -137,10 +167,10 @@ public class SharedVector {
 
     public double dot(SharedVector other) {
         // TODO: compute dot product (row · column)
-        int thisId = System.identityHashCode(this);
-        int otherId = System.identityHashCode(other);
-        
-        if(thisId > otherId) { 
+        int thisId = System.identityHashCode(this.lock);
+        int otherId = System.identityHashCode(other.lock);
+
+        if(thisId > otherId) {
             other.readLock();
             this.readLock();
         }
@@ -150,19 +180,15 @@ public class SharedVector {
         }
 
         try {
-            if (this.vector.length != other.vector.length)
+            if (this.length != other.length)
                 throw new IllegalArgumentException("Dot product: dimensions mismatch");
             if (this.orientation == other.orientation) {
                 throw new IllegalArgumentException("Dot product: dimensions mismatch");
             }
-            double sum = 0;
-            for (int i = 0; i < vector.length; i++) {
-                sum += this.vector[i] * other.vector[i];
-            }
-            return sum;
-        } 
+            return VectorKernels.get().dot(this.vector, offset, other.vector, other.offset, length);
+        }
         finally {
-            if(thisId > otherId) { 
+            if(thisId > otherId) {
                 other.readUnlock();
                 this.readUnlock();
             }
@@ -175,11 +201,11 @@ public class SharedVector {
 
     public void vecMatMul(SharedMatrix matrix) {
         // TODO: compute row-vector × matrix
-        
+
         this.writeLock();
         try {
             double[][] matrixData = matrix.readRowMajor();
-            if (this.vector.length != matrixData.length) {
+            if (this.length != matrixData.length) {
                 throw new IllegalArgumentException("Vector-Matrix multiplication: dimension mismatch");
             }
             if(this.orientation != VectorOrientation.ROW_MAJOR) {
@@ -189,16 +215,22 @@ public class SharedVector {
             int numCols = matrixData[0].length;
             double[] result = new double[numCols];
 
-            for (int i = 0; i < this.length(); i++) {
-                double scalar = this.vector[i]; 
-                double[] currentRow = matrixData[i]; 
-            
-                for (int j = 0; j < numCols; j++) {
-                    result[j] += scalar * currentRow[j];
-                }
+            VectorKernels kernels = VectorKernels.get();
+            for (int i = 0; i < length; i++) {
+                kernels.axpy(this.vector[offset + i], matrixData[i], 0, result, 0, numCols);
+            }
+            if (numCols == length) {
+                // same shape: write back into the slice so a matrix view stays attached
+                System.arraycopy(result, 0, this.vector, offset, numCols);
             }
-            this.vector = result;
-        } 
+            else {
+                // shape changed: the vector gets its own storage (a matrix view detaches)
+                if (owner != null) owner.markDetached();
+                this.vector = result;
+                this.offset = 0;
+                this.length = numCols;
+            }
+        }
         finally {
             this.writeUnlock();
         }
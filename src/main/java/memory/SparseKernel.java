@@ -0,0 +1,416 @@
+package memory;
+
+import java.util.Arrays;
+
+/**
+ * One sparse-aware operation, computed in independent output row ranges so the engine can
+ * spread it over the executor like the other row-wise kernels. Sparse operands are read as
+ * CSR; a CSC operand is converted once when the kernel is created.
+ * Results are sparse when every operand is sparse, otherwise dense.
+ */
+public abstract class SparseKernel {
+
+    protected final int numRows;
+    protected final int numCols;
+
+    private SparseKernel(int numRows, int numCols) {
+        this.numRows = numRows;
+        this.numCols = numCols;
+    }
+
+    public int numRows() {
+        return numRows;
+    }
+
+    public int numCols() {
+        return numCols;
+    }
+
+    /**
+     * How many units computeRows ranges over: output rows, or none when there is nothing to compute.
+     */
+    public int rowsToCompute() {
+        return numRows;
+    }
+
+    /**
+     * Estimated multiply-adds (or additions) over the whole output, for chunk sizing and metrics.
+     */
+    public abstract long work();
+
+    /**
+     * Computes output rows [from, to). Ranges never overlap, so they may run concurrently.
+     */
+    public abstract void computeRows(int from, int to);
+
+    public boolean hasSparseResult() {
+        return false;
+    }
+
+    /** Valid once every row has been computed. */
+    public SparseMatrix getSparseResult() {
+        throw new IllegalStateException("Sparse kernel: result is dense");
+    }
+
+    /** Valid once every row has been computed. */
+    public double[][] getDenseResult() {
+        throw new IllegalStateException("Sparse kernel: result is sparse");
+    }
+
+    /** sign * (a x b), sparse result. */
+    public static SparseKernel multiply(SparseMatrix a, SparseMatrix b, double sign) {
+        requireProduct(a.numRows(), a.numCols(), b.numRows());
+        return new SparseSparseProduct(a.toRowMajor(), b.toRowMajor(), sign);
+    }
+
+    /** sign * (a x b), dense result. */
+    public static SparseKernel multiply(SparseMatrix a, double[][] b, double sign) {
+        requireProduct(a.numRows(), a.numCols(), b.length);
+        return new SparseDenseProduct(a.toRowMajor(), b, sign);
+    }
+
+    /** sign * (a x b), dense result. */
+    public static SparseKernel multiply(double[][] a, SparseMatrix b, double sign) {
+        requireProduct(a.length, a.length == 0 ? 0 : a[0].length, b.numRows());
+        return new DenseSparseProduct(a, b.toRowMajor(), sign);
+    }
+
+    /** sign * (a + b), sparse result. */
+    public static SparseKernel add(SparseMatrix a, SparseMatrix b, double sign) {
+        requireSameShape(a.numRows(), a.numCols(), b.numRows(), b.numCols());
+        return new SparseSum(a.toRowMajor(), b.toRowMajor(), sign);
+    }
+
+    /** sign * (a + b), dense result. */
+    public static SparseKernel add(SparseMatrix a, double[][] b, double sign) {
+        requireSameShape(a.numRows(), a.numCols(), b.length, b.length == 0 ? 0 : b[0].length);
+        return new MixedSum(a.toRowMajor(), b, sign);
+    }
+
+    /** -a, sharing a's structure. */
+    public static SparseKernel negate(SparseMatrix a) {
+        return new Negation(a);
+    }
+
+    /** a^T: a view over a's arrays, with no rows to compute. */
+    public static SparseKernel transpose(SparseMatrix a) {
+        SparseMatrix t = a.transpose();
+        return new SparseResult(t.numRows(), t.numCols()) {
+            @Override public long work() { return 0; }
+            @Override public int rowsToCompute() { return 0; }
+            @Override public void computeRows(int from, int to) {}
+            @Override public SparseMatrix getSparseResult() { return t; }
+        };
+    }
+
+    private static void requireProduct(int rows, int depth, int otherRows) {
+        if (depth != otherRows) {
+            throw new IllegalArgumentException("Multiply: dimensions mismatch");
+        }
+    }
+
+    private static void requireSameShape(int rows, int cols, int otherRows, int otherCols) {
+        if (rows != otherRows || cols != otherCols) {
+            throw new IllegalArgumentException("Add: dimensions mismatch");
+        }
+    }
+
+    /**
+     * Rows are built independently into per-row arrays, then stitched into CSR once at the end.
+     */
+    private abstract static class SparseResult extends SparseKernel {
+        final int[][] rowIndices;
+        final double[][] rowValues;
+        private SparseMatrix result;
+
+        SparseResult(int numRows, int numCols) {
+            super(numRows, numCols);
+            rowIndices = new int[numRows][];
+            rowValues = new double[numRows][];
+        }
+
+        @Override
+        public boolean hasSparseResult() {
+            return true;
+        }
+
+        @Override
+        public SparseMatrix getSparseResult() {
+            if (result == null) {
+                int[] pointers = new int[numRows + 1];
+                for (int i = 0; i < numRows; i++) pointers[i + 1] = pointers[i] + rowIndices[i].length;
+                int[] indices = new int[pointers[numRows]];
+                double[] values = new double[pointers[numRows]];
+                for (int i = 0; i < numRows; i++) {
+                    System.arraycopy(rowIndices[i], 0, indices, pointers[i], rowIndices[i].length);
+                    System.arraycopy(rowValues[i], 0, values, pointers[i], rowValues[i].length);
+                }
+                result = new SparseMatrix(numRows, numCols, VectorOrientation.ROW_MAJOR, pointers, indices, values);
+            }
+            return result;
+        }
+    }
+
+    private abstract static class DenseResult extends SparseKernel {
+        final double[][] result;
+
+        DenseResult(int numRows, int numCols) {
+            super(numRows, numCols);
+            result = new double[numRows][numCols];
+        }
+
+        @Override
+        public double[][] getDenseResult() {
+            return result;
+        }
+    }
+
+    /**
+     * Gustavson's row-by-row product with a dense accumulator per row range.
+     */
+    private static class SparseSparseProduct extends SparseResult {
+        private final SparseMatrix a;
+        private final SparseMatrix b;
+        private final double sign;
+
+        SparseSparseProduct(SparseMatrix a, SparseMatrix b, double sign) {
+            super(a.numRows(), b.numCols());
+            this.a = a;
+            this.b = b;
+            this.sign = sign;
+        }
+
+        @Override
+        public long work() {
+            long work = 0;
+            int[] bp = b.pointers();
+            for (int k : a.indices()) work += bp[k + 1] - bp[k];
+            return work;
+        }
+
+        @Override
+        public void computeRows(int from, int to) {
+            int[] ap = a.pointers(), ai = a.indices();
+            double[] av = a.values();
+            int[] bp = b.pointers(), bi = b.indices();
+            double[] bv = b.values();
+            double[] acc = new double[numCols];
+            int[] seenInRow = new int[numCols];
+            Arrays.fill(seenInRow, -1);
+            int[] touched = new int[numCols];
+            for (int i = from; i < to; i++) {
+                int count = 0;
+                for (int p = ap[i]; p < ap[i + 1]; p++) {
+                    double scale = sign * av[p];
+                    int k = ai[p];
+                    for (int q = bp[k]; q < bp[k + 1]; q++) {
+                        int j = bi[q];
+                        if (seenInRow[j] != i) {
+                            seenInRow[j] = i;
+                            acc[j] = scale * bv[q];
+                            touched[count++] = j;
+                        }
+                        else {
+                            acc[j] += scale * bv[q];
+                        }
+                    }
+                }
+                Arrays.sort(touched, 0, count);
+                int[] cols = Arrays.copyOf(touched, count);
+                double[] vals = new double[count];
+                for (int c = 0; c < count; c++) vals[c] = acc[cols[c]];
+                rowIndices[i] = cols;
+                rowValues[i] = vals;
+            }
+        }
+    }
+
+    private static class SparseDenseProduct extends DenseResult {
+        private final SparseMatrix a;
+        private final double[][] b;
+        private final double sign;
+
+        SparseDenseProduct(SparseMatrix a, double[][] b, double sign) {
+            super(a.numRows(), b.length == 0 ? 0 : b[0].length);
+            this.a = a;
+            this.b = b;
+            this.sign = sign;
+        }
+
+        @Override
+        public long work() {
+            return (long) a.nonZeros() * numCols;
+        }
+
+        @Override
+        public void computeRows(int from, int to) {
+            int[] ap = a.pointers(), ai = a.indices();
+            double[] av = a.values();
+            VectorKernels kernels = VectorKernels.get();
+            for (int i = from; i < to; i++) {
+                for (int p = ap[i]; p < ap[i + 1]; p++) {
+                    kernels.axpy(sign * av[p], b[ai[p]], 0, result[i], 0, numCols);
+                }
+            }
+        }
+    }
+
+    private static class DenseSparseProduct extends DenseResult {
+        private final double[][] a;
+        private final SparseMatrix b;
+        private final double sign;
+
+        DenseSparseProduct(double[][] a, SparseMatrix b, double sign) {
+            super(a.length, b.numCols());
+            this.a = a;
+            this.b = b;
+            this.sign = sign;
+        }
+
+        @Override
+        public long work() {
+            return (long) numRows * b.nonZeros();
+        }
+
+        @Override
+        public void computeRows(int from, int to) {
+            int[] bp = b.pointers(), bi = b.indices();
+            double[] bv = b.values();
+            int depth = b.numRows();
+            for (int i = from; i < to; i++) {
+                double[] aRow = a[i];
+                double[] cRow = result[i];
+                for (int k = 0; k < depth; k++) {
+                    double scale = sign * aRow[k];
+                    for (int q = bp[k]; q < bp[k + 1]; q++) {
+                        cRow[bi[q]] += scale * bv[q];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges the two sorted rows.
+     */
+    private static class SparseSum extends SparseResult {
+        private final SparseMatrix a;
+        private final SparseMatrix b;
+        private final double sign;
+
+        SparseSum(SparseMatrix a, SparseMatrix b, double sign) {
+            super(a.numRows(), a.numCols());
+            this.a = a;
+            this.b = b;
+            this.sign = sign;
+        }
+
+        @Override
+        public long work() {
+            return (long) a.nonZeros() + b.nonZeros();
+        }
+
+        @Override
+        public void computeRows(int from, int to) {
+            int[] ap = a.pointers(), ai = a.indices();
+            double[] av = a.values();
+            int[] bp = b.pointers(), bi = b.indices();
+            double[] bv = b.values();
+            for (int i = from; i < to; i++) {
+                int p = ap[i], pEnd = ap[i + 1];
+                int q = bp[i], qEnd = bp[i + 1];
+                int[] cols = new int[(pEnd - p) + (qEnd - q)];
+                double[] vals = new double[cols.length];
+                int n = 0;
+                while (p < pEnd || q < qEnd) {
+                    if (q == qEnd || (p < pEnd && ai[p] < bi[q])) {
+                        cols[n] = ai[p];
+                        vals[n++] = sign * av[p++];
+                    }
+                    else if (p == pEnd || bi[q] < ai[p]) {
+                        cols[n] = bi[q];
+                        vals[n++] = sign * bv[q++];
+                    }
+                    else {
+                        cols[n] = ai[p];
+                        vals[n++] = sign * (av[p++] + bv[q++]);
+                    }
+                }
+                rowIndices[i] = n == cols.length ? cols : Arrays.copyOf(cols, n);
+                rowValues[i] = n == vals.length ? vals : Arrays.copyOf(vals, n);
+            }
+        }
+    }
+
+    private static class MixedSum extends DenseResult {
+        private final SparseMatrix a;
+        private final double[][] b;
+        private final double sign;
+
+        MixedSum(SparseMatrix a, double[][] b, double sign) {
+            super(a.numRows(), a.numCols());
+            this.a = a;
+            this.b = b;
+            this.sign = sign;
+        }
+
+        @Override
+        public long work() {
+            return (long) numRows * numCols;
+        }
+
+        @Override
+        public void computeRows(int from, int to) {
+            int[] ap = a.pointers(), ai = a.indices();
+            double[] av = a.values();
+            VectorKernels kernels = VectorKernels.get();
+            for (int i = from; i < to; i++) {
+                double[] row = result[i];
+                System.arraycopy(b[i], 0, row, 0, numCols);
+                for (int p = ap[i]; p < ap[i + 1]; p++) row[ai[p]] += av[p];
+                if (sign < 0) kernels.negate(row, 0, numCols);
+            }
+        }
+    }
+
+    /**
+     * Negates the values; computeRows ranges over the major dimension, whichever orientation a has.
+     */
+    private static class Negation extends SparseKernel {
+        private final SparseMatrix a;
+        private final double[] values;
+
+        Negation(SparseMatrix a) {
+            super(a.numRows(), a.numCols());
+            this.a = a;
+            this.values = new double[a.nonZeros()];
+        }
+
+        @Override
+        public long work() {
+            return a.nonZeros();
+        }
+
+        @Override
+        public int rowsToCompute() {
+            return a.pointers().length - 1;
+        }
+
+        @Override
+        public void computeRows(int from, int to) {
+            int[] ap = a.pointers();
+            double[] av = a.values();
+            for (int p = ap[from]; p < ap[to]; p++) values[p] = -av[p];
+        }
+
+        @Override
+        public boolean hasSparseResult() {
+            return true;
+        }
+
+        @Override
+        public SparseMatrix getSparseResult() {
+            return new SparseMatrix(a.numRows(), a.numCols(), a.getOrientation(), a.pointers(), a.indices(), values);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package memory;
+
+import java.util.Arrays;
+
+/**
+ * Immutable compressed sparse storage. A ROW_MAJOR matrix is CSR: pointers run over rows and
+ * indices hold column numbers. A COLUMN_MAJOR matrix is CSC: pointers run over columns and
+ * indices hold row numbers. Indices are ascending within each row (column).
+ * Since CSR of A is exactly CSC of A^T, transpose() shares all three arrays.
+ * Zeros are not stored, so a structural zero always reads back as +0.0.
+ */
+public class SparseMatrix {
+
+    /** Matrices with at most this fraction of non-zeros are stored sparse. */
+    public static final double SPARSE_DENSITY = 0.05;
+
+    private final int numRows;
+    private final int numCols;
+    private final VectorOrientation orientation;
+    private final int[] pointers;
+    private final int[] indices;
+    private final double[] values;
+
+    SparseMatrix(int numRows, int numCols, VectorOrientation orientation, int[] pointers, int[] indices, double[] values) {
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.orientation = orientation;
+        this.pointers = pointers;
+        this.indices = indices;
+        this.values = values;
+    }
+
+    public static SparseMatrix fromRows(double[][] matrix) {
+        int rows = matrix.length;
+        int cols = rows == 0 ? 0 : matrix[0].length;
+        int[] pointers = new int[rows + 1];
+        for (int i = 0; i < rows; i++) {
+            if (matrix[i].length != cols) {
+                throw new IllegalArgumentException("Matrix load: inconsistent row sizes");
+            }
+            int count = 0;
+            for (double v : matrix[i]) {
+                if (v != 0) count++;
+            }
+            pointers[i + 1] = pointers[i] + count;
+        }
+        int[] indices = new int[pointers[rows]];
+        double[] values = new double[pointers[rows]];
+        for (int i = 0; i < rows; i++) {
+            int p = pointers[i];
+            double[] row = matrix[i];
+            for (int j = 0; j < cols; j++) {
+                if (row[j] != 0) {
+                    indices[p] = j;
+                    values[p++] = row[j];
+                }
+            }
+        }
+        return new SparseMatrix(rows, cols, VectorOrientation.ROW_MAJOR, pointers, indices, values);
+    }
+
+    public int numRows() {
+        return numRows;
+    }
+
+    public int numCols() {
+        return numCols;
+    }
+
+    public int nonZeros() {
+        return values.length;
+    }
+
+    public double density() {
+        long elements = (long) numRows * numCols;
+        return elements == 0 ? 0 : (double) values.length / elements;
+    }
+
+    public VectorOrientation getOrientation() {
+        return orientation;
+    }
+
+    public SparseMatrix transpose() {
+        VectorOrientation flipped = orientation == VectorOrientation.ROW_MAJOR
+                ? VectorOrientation.COLUMN_MAJOR : VectorOrientation.ROW_MAJOR;
+        return new SparseMatrix(numCols, numRows, flipped, pointers, indices, values);
+    }
+
+    /**
+     * The same matrix as CSR; a CSC matrix is converted with one counting sort over its entries.
+     */
+    public SparseMatrix toRowMajor() {
+        if (orientation == VectorOrientation.ROW_MAJOR) return this;
+        int[] rowPointers = new int[numRows + 1];
+        for (int index : indices) rowPointers[index + 1]++;
+        for (int i = 0; i < numRows; i++) rowPointers[i + 1] += rowPointers[i];
+        int[] next = Arrays.copyOf(rowPointers, numRows);
+        int[] cols = new int[values.length];
+        double[] vals = new double[values.length];
+        for (int j = 0; j < numCols; j++) {
+            // columns are visited in order, so each row's column indices come out ascending
+            for (int p = pointers[j]; p < pointers[j + 1]; p++) {
+                int q = next[indices[p]]++;
+                cols[q] = j;
+                vals[q] = values[p];
+            }
+        }
+        return new SparseMatrix(numRows, numCols, VectorOrientation.ROW_MAJOR, rowPointers, cols, vals);
+    }
+
+    public double[][] toDense() {
+        double[][] dense = new double[numRows][numCols];
+        for (int major = 0; major + 1 < pointers.length; major++) {
+            for (int p = pointers[major]; p < pointers[major + 1]; p++) {
+                if (orientation == VectorOrientation.ROW_MAJOR) dense[major][indices[p]] = values[p];
+                else dense[indices[p]][major] = values[p];
+            }
+        }
+        return dense;
+    }
+
+    /**
+     * Copies one row, zeros included, into dst.
+     */
+    public void readRow(int row, double[] dst) {
+        Arrays.fill(dst, 0, numCols, 0.0);
+        if (orientation == VectorOrientation.ROW_MAJOR) {
+            for (int p = pointers[row]; p < pointers[row + 1]; p++) dst[indices[p]] = values[p];
+        }
+        else {
+            for (int j = 0; j < numCols; j++) {
+                int p = Arrays.binarySearch(indices, pointers[j], pointers[j + 1], row);
+                if (p >= 0) dst[j] = values[p];
+            }
+        }
+    }
+
+    /** Bytes held by the three arrays. */
+    public long sizeInBytes() {
+        return (long) pointers.length * Integer.BYTES + (long) values.length * (Integer.BYTES + Double.BYTES);
+    }
+
+    int[] pointers() {
+        return pointers;
+    }
+
+    int[] indices() {
+        return indices;
+    }
+
+    double[] values() {
+        return values;
+    }
+}
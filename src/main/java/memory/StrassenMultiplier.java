@@ -0,0 +1,218 @@
+package memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Strassen's recursive product C = A x B for large square matrices.
+ * Each level splits both operands into quadrants and replaces 8 half-size products by 7,
+ * at the cost of 18 quadrant additions. Recursion stops once a side is at most the cutoff;
+ * the 7^levels leaf products are ordinary BlockedMultipliers whose tiles are all independent,
+ * so every sub-product can run at the same time.
+ * <p>
+ * The operand sums are formed when the multiplier is created and the quadrants are combined
+ * in getResult(), both O(n^2); only the leaf products are split into tasks.
+ * Strassen's rounding error grows faster with n than the classic product's, so getResult()
+ * recomputes a few rows the classic way and records the relative difference (sampledError()).
+ */
+public class StrassenMultiplier {
+
+    public static final int MIN_CUTOFF = 128; // below this the extra additions cost more than they save
+    private static final int SAMPLE_ROWS = 4;
+
+    private final SharedMatrix leftMatrix;
+    private final SharedMatrix rightMatrix;
+    private final int size;     // n, the original side
+    private final int padded;   // side after zero padding to leafSize * 2^levels
+    private final int levels;
+    private final double sign;
+    private final Product root;
+    private final List<BlockedMultiplier> leaves = new ArrayList<>();
+    private double[][] result;
+    private double sampledError = Double.NaN;
+
+    /** One level of the recursion: either a leaf product or seven sub-products. */
+    private static final class Product {
+        BlockedMultiplier leaf;
+        Product[] parts;
+    }
+
+    public StrassenMultiplier(SharedMatrix leftMatrix, SharedMatrix rightMatrix, boolean negate, int cutoff) {
+        int n = leftMatrix.numRows();
+        if (leftMatrix.numCols() != n || rightMatrix.numRows() != n || rightMatrix.numCols() != n) {
+            throw new IllegalArgumentException("Strassen multiply: operands must be square and of the same size");
+        }
+        cutoff = Math.max(cutoff, MIN_CUTOFF);
+        int leafSize = n;
+        int depth = 0;
+        while (leafSize > cutoff) {
+            leafSize = (leafSize + 1) / 2;
+            depth++;
+        }
+        this.leftMatrix = leftMatrix;
+        this.rightMatrix = rightMatrix;
+        this.size = n;
+        this.levels = depth;
+        this.padded = leafSize << depth;
+        this.sign = negate ? -1.0 : 1.0;
+        this.root = build(pad(leftMatrix.readRowMajor()), pad(rightMatrix.readRowMajor()), depth);
+    }
+
+    /**
+     * True if the product is square and larger than the cutoff, i.e. worth at least one level.
+     */
+    public static boolean applies(SharedMatrix left, SharedMatrix right, int cutoff) {
+        int n = left.numRows();
+        return cutoff > 0 && n > Math.max(cutoff, MIN_CUTOFF)
+                && left.numCols() == n && right.numRows() == n && right.numCols() == n;
+    }
+
+    private double[][] pad(double[][] m) {
+        if (padded == size) return m;
+        double[][] p = new double[padded][padded];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(m[i], 0, p[i], 0, size);
+        }
+        return p;
+    }
+
+    private Product build(double[][] a, double[][] b, int level) {
+        Product product = new Product();
+        if (level == 0) {
+            product.leaf = new BlockedMultiplier(a, b, sign);
+            leaves.add(product.leaf);
+            return product;
+        }
+        int h = a.length / 2;
+        double[][] a11 = quadrant(a, 0, 0, h), a12 = quadrant(a, 0, h, h), a21 = quadrant(a, h, 0, h), a22 = quadrant(a, h, h, h);
+        double[][] b11 = quadrant(b, 0, 0, h), b12 = quadrant(b, 0, h, h), b21 = quadrant(b, h, 0, h), b22 = quadrant(b, h, h, h);
+        product.parts = new Product[] {
+                build(sum(a11, a22, 1), sum(b11, b22, 1), level - 1), // M1
+                build(sum(a21, a22, 1), b11, level - 1),              // M2
+                build(a11, sum(b12, b22, -1), level - 1),             // M3
+                build(a22, sum(b21, b11, -1), level - 1),             // M4
+                build(sum(a11, a12, 1), b22, level - 1),              // M5
+                build(sum(a21, a11, -1), sum(b11, b12, 1), level - 1), // M6
+                build(sum(a12, a22, -1), sum(b21, b22, 1), level - 1)  // M7
+        };
+        return product;
+    }
+
+    private static double[][] quadrant(double[][] m, int row0, int col0, int h) {
+        double[][] q = new double[h][];
+        for (int i = 0; i < h; i++) {
+            q[i] = new double[h];
+            System.arraycopy(m[row0 + i], col0, q[i], 0, h);
+        }
+        return q;
+    }
+
+    // x + s * y
+    private static double[][] sum(double[][] x, double[][] y, double s) {
+        int h = x.length;
+        double[][] out = new double[h][];
+        VectorKernels kernels = VectorKernels.get();
+        for (int i = 0; i < h; i++) {
+            out[i] = x[i].clone();
+            kernels.axpy(s, y[i], 0, out[i], 0, h);
+        }
+        return out;
+    }
+
+    /**
+     * The leaf products; their tiles are the only parallel work.
+     */
+    public List<BlockedMultiplier> getLeaves() {
+        return leaves;
+    }
+
+    public int getLevels() {
+        return levels;
+    }
+
+    /**
+     * Multiply-adds actually performed by the leaf products (the quadrant sums are not counted).
+     */
+    public long leafFlops() {
+        long leaf = padded >> levels;
+        return 2 * leaf * leaf * leaf * leaves.size();
+    }
+
+    /**
+     * Combines the leaf products into C; call once every leaf tile has been computed.
+     */
+    public synchronized double[][] getResult() {
+        if (result == null) {
+            double[] full = combine(root, padded); // flat, padded x padded
+            result = new double[size][];
+            for (int i = 0; i < size; i++) {
+                result[i] = Arrays.copyOfRange(full, i * padded, i * padded + size);
+            }
+            sampledError = checkSample();
+        }
+        return result;
+    }
+
+    // returns the product as a flat side x side row-major array
+    private static double[] combine(Product product, int side) {
+        if (product.leaf != null) return product.leaf.getFlatResult();
+        int h = side / 2;
+        double[][] m = new double[7][];
+        for (int k = 0; k < 7; k++) {
+            m[k] = combine(product.parts[k], h);
+        }
+        double[] c = new double[side * side];
+        for (int i = 0; i < h; i++) {
+            int top = i * side;       // row i of C11 | C12
+            int bottom = (h + i) * side; // row i of C21 | C22
+            int q = i * h;
+            for (int j = 0; j < h; j++) {
+                int x = q + j;
+                c[top + j] = m[0][x] + m[3][x] - m[4][x] + m[6][x];        // C11 = M1 + M4 - M5 + M7
+                c[top + h + j] = m[2][x] + m[4][x];                        // C12 = M3 + M5
+                c[bottom + j] = m[1][x] + m[3][x];                         // C21 = M2 + M4
+                c[bottom + h + j] = m[0][x] - m[1][x] + m[2][x] + m[5][x]; // C22 = M1 - M2 + M3 + M6
+            }
+        }
+        return c;
+    }
+
+    // recomputes a few evenly spaced rows with the classic product and compares them with C
+    private double checkSample() {
+        int step = Math.max(1, size / SAMPLE_ROWS);
+        int samples = (size + step - 1) / step;
+        double[][] aRows = new double[samples][size];
+        double[][] exact = new double[samples][size];
+        for (int s = 0; s < samples; s++) {
+            leftMatrix.readRow(s * step, aRows[s]);
+        }
+        double[] bRow = new double[size];
+        for (int k = 0; k < size; k++) {
+            rightMatrix.readRow(k, bRow); // B is read once for all sampled rows
+            for (int s = 0; s < samples; s++) {
+                double a = sign * aRows[s][k];
+                for (int j = 0; j < size; j++) exact[s][j] += a * bRow[j];
+            }
+        }
+        double diff = 0;
+        double norm = 0;
+        for (int s = 0; s < samples; s++) {
+            double[] row = result[s * step];
+            for (int j = 0; j < size; j++) {
+                double d = row[j] - exact[s][j];
+                diff += d * d;
+                norm += exact[s][j] * exact[s][j];
+            }
+        }
+        return norm == 0 ? Math.sqrt(diff) : Math.sqrt(diff / norm);
+    }
+
+    /**
+     * Frobenius-norm relative difference ||C_strassen - C_classic|| / ||C_classic|| over the sampled rows.
+     * NaN until getResult() has run.
+     */
+    public double sampledError() {
+        return sampledError;
+    }
+}
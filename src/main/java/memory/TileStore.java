@@ -0,0 +1,330 @@
+package memory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Scratch-file storage for TiledMatrix, with a bounded in-memory tile cache.
+ * Every tile is tileSize x tileSize doubles, row-major, zero-padded at the matrix edges, and
+ * lives at a fixed offset in its matrix's scratch file. Tiles are written once and then only
+ * read, so a cached tile never has to be re-read while its write is still in flight.
+ * <p>
+ * Cached tiles are evicted least-recently-used first once they exceed budgetBytes; a dirty
+ * victim is written back outside the lock. Tiles pinned by a running task are never evicted,
+ * so the budget can be overshot by the tiles in use at that moment (a few per worker).
+ */
+public class TileStore implements AutoCloseable {
+
+    private final Path directory;
+    private final int tileSize;
+    private final long budgetBytes;
+    private final long tileBytes;
+    private final BufferPool pool;
+    private final ConcurrentLinkedQueue<ByteBuffer> ioBuffers = new ConcurrentLinkedQueue<>(); // one per concurrent transfer
+
+    private final LinkedHashMap<Key, Tile> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Key, double[]> writing = new HashMap<>(); // evicted dirty tiles being written back
+    private final List<TiledMatrix> open = new ArrayList<>();
+    private long cachedBytes = 0;
+    private long peakBytes = 0;
+    private long hits = 0;
+    private long reads = 0;
+    private long writes = 0;
+    private long nextId = 0;
+
+    private record Key(long matrix, int tile) {}
+
+    private static final class Tile {
+        double[] data; // null while it is being read
+        boolean failed; // the read threw; waiters give up
+        int pins;
+        boolean dirty; // not yet in the scratch file
+
+        Tile(double[] data, int pins, boolean dirty) {
+            this.data = data;
+            this.pins = pins;
+            this.dirty = dirty;
+        }
+    }
+
+    public TileStore(Path directory, int tileSize, long budgetBytes) throws IOException {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("TileStore: tile size must be positive");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.tileSize = tileSize;
+        this.budgetBytes = Math.max(budgetBytes, 0);
+        this.tileBytes = (long) tileSize * tileSize * Double.BYTES;
+        this.pool = new BufferPool(Math.min(this.budgetBytes, 64 * tileBytes));
+    }
+
+    /**
+     * The largest multiple of 64 (at least 64, at most 1024) such that eight tiles per worker fit in the budget.
+     */
+    public static int tileSizeFor(long budgetBytes, int workers) {
+        long perTile = budgetBytes / (8L * Math.max(workers, 1));
+        int side = (int) Math.sqrt(perTile / (double) Double.BYTES);
+        return Math.max(64, Math.min(1024, side / 64 * 64));
+    }
+
+    public int tileSize() {
+        return tileSize;
+    }
+
+    /**
+     * A new all-zero matrix backed by its own scratch file.
+     */
+    public TiledMatrix create(int rows, int cols) {
+        try {
+            Path file = Files.createTempFile(directory, "lae-", ".tiles");
+            TiledMatrix matrix;
+            synchronized (this) {
+                matrix = new TiledMatrix(this, nextId++, rows, cols, file);
+                open.add(matrix);
+            }
+            return matrix;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("TileStore: cannot create a scratch file", e);
+        }
+    }
+
+    /**
+     * A zeroed tile-sized buffer, to be filled and handed to put().
+     */
+    public double[] newTile() {
+        double[] data = pool.take((int) (tileBytes / Double.BYTES));
+        Arrays.fill(data, 0.0);
+        return data;
+    }
+
+    /**
+     * The tile's data, read from the scratch file if it is not cached. It stays in memory
+     * until the matching unpin(); the caller must only read it.
+     */
+    double[] pin(TiledMatrix matrix, int tile) {
+        Key key = new Key(matrix.id(), tile);
+        Tile entry;
+        synchronized (this) {
+            entry = tiles.get(key);
+            if (entry != null) {
+                entry.pins++;
+                hits++;
+                while (entry.data == null && !entry.failed) {
+                    waitForLoad();
+                }
+                if (entry.failed) {
+                    throw new IllegalStateException("TileStore: a tile could not be read");
+                }
+                return entry.data;
+            }
+            double[] inFlight = writing.get(key);
+            if (inFlight != null) {
+                // evicted but not written yet: take it back, the write in flight persists it anyway
+                tiles.put(key, new Tile(inFlight, 1, false));
+                cachedBytes += tileBytes;
+                hits++;
+                return inFlight;
+            }
+            entry = new Tile(null, 1, false);
+            tiles.put(key, entry);
+            cachedBytes += tileBytes;
+            notePeak();
+            reads++;
+        }
+        double[] data = pool.take((int) (tileBytes / Double.BYTES));
+        try {
+            read(matrix, tile, data);
+        }
+        catch (RuntimeException e) {
+            synchronized (this) {
+                entry.failed = true;
+                tiles.remove(key);
+                cachedBytes -= tileBytes;
+                notifyAll();
+            }
+            pool.give(data);
+            throw e;
+        }
+        synchronized (this) {
+            entry.data = data;
+            notifyAll();
+        }
+        evict();
+        return data;
+    }
+
+    // tiles being written back still occupy memory
+    private void notePeak() {
+        peakBytes = Math.max(peakBytes, cachedBytes + writing.size() * tileBytes);
+    }
+
+    private void waitForLoad() {
+        try {
+            wait();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("TileStore: interrupted while waiting for a tile", e);
+        }
+    }
+
+    synchronized void unpin(TiledMatrix matrix, int tile) {
+        Tile entry = tiles.get(new Key(matrix.id(), tile));
+        if (entry != null && entry.pins > 0) entry.pins--;
+    }
+
+    /**
+     * Stores a freshly computed tile; the store takes ownership of data.
+     */
+    void put(TiledMatrix matrix, int tile, double[] data) {
+        Key key = new Key(matrix.id(), tile);
+        synchronized (this) {
+            Tile old = tiles.put(key, new Tile(data, 0, true));
+            if (old == null) cachedBytes += tileBytes;
+            notePeak();
+        }
+        evict();
+    }
+
+    // Evicts unpinned tiles, least recently used first, until the cache fits the budget.
+    private void evict() {
+        List<Map.Entry<Key, double[]>> victims = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<Key, Tile>> it = tiles.entrySet().iterator();
+            while (cachedBytes > budgetBytes && it.hasNext()) {
+                Map.Entry<Key, Tile> e = it.next();
+                Tile entry = e.getValue();
+                if (entry.pins > 0 || entry.data == null) continue;
+                it.remove();
+                cachedBytes -= tileBytes;
+                if (entry.dirty) {
+                    writing.put(e.getKey(), entry.data);
+                    victims.add(Map.entry(e.getKey(), entry.data));
+                }
+                else {
+                    pool.give(entry.data);
+                }
+            }
+        }
+        for (Map.Entry<Key, double[]> victim : victims) {
+            TiledMatrix matrix = find(victim.getKey().matrix());
+            try {
+                if (matrix != null) write(matrix, victim.getKey().tile(), victim.getValue());
+            }
+            catch (UncheckedIOException e) {
+                if (find(victim.getKey().matrix()) != null) throw e; // else deleted meanwhile, nothing to keep
+            }
+            finally {
+                synchronized (this) {
+                    writing.remove(victim.getKey());
+                    if (!tiles.containsKey(victim.getKey())) pool.give(victim.getValue());
+                }
+            }
+        }
+    }
+
+    private synchronized TiledMatrix find(long id) {
+        for (TiledMatrix m : open) {
+            if (m.id() == id) return m;
+        }
+        return null; // deleted while its tiles were being evicted
+    }
+
+    private ByteBuffer borrowBuffer() {
+        ByteBuffer buffer = ioBuffers.poll();
+        if (buffer == null) buffer = ByteBuffer.allocateDirect((int) tileBytes).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.clear();
+        return buffer;
+    }
+
+    private void read(TiledMatrix matrix, int tile, double[] data) {
+        ByteBuffer buffer = borrowBuffer();
+        try {
+            FileChannel channel = matrix.channel();
+            long position = tile * tileBytes;
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) break; // never written: zeros
+            }
+            while (buffer.hasRemaining()) buffer.put((byte) 0);
+            buffer.flip();
+            buffer.asDoubleBuffer().get(data);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("TileStore: cannot read a tile", e);
+        }
+        finally {
+            ioBuffers.offer(buffer);
+        }
+    }
+
+    private void write(TiledMatrix matrix, int tile, double[] data) {
+        ByteBuffer buffer = borrowBuffer();
+        buffer.asDoubleBuffer().put(data);
+        try {
+            FileChannel channel = matrix.channel();
+            long position = tile * tileBytes;
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, position + buffer.position());
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("TileStore: cannot write a tile", e);
+        }
+        finally {
+            ioBuffers.offer(buffer);
+        }
+        synchronized (this) {
+            writes++;
+        }
+    }
+
+    /**
+     * Drops every cached tile of matrix without writing it back and forgets the matrix.
+     */
+    void discard(TiledMatrix matrix) {
+        synchronized (this) {
+            Iterator<Map.Entry<Key, Tile>> it = tiles.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Key, Tile> e = it.next();
+                if (e.getKey().matrix() != matrix.id()) continue;
+                it.remove();
+                cachedBytes -= tileBytes;
+                if (e.getValue().pins == 0 && e.getValue().data != null) pool.give(e.getValue().data);
+            }
+            open.remove(matrix);
+        }
+    }
+
+    /**
+     * Deletes every matrix still open, with its scratch file.
+     */
+    @Override
+    public void close() {
+        List<TiledMatrix> remaining;
+        synchronized (this) {
+            remaining = new ArrayList<>(open);
+        }
+        for (TiledMatrix m : remaining) {
+            m.delete();
+        }
+    }
+
+    public synchronized String getReport() {
+        return String.format("--- Out-of-core ---\nTile: %d x %d | Budget: %d MB | Cached: %d MB | Peak: %d MB | Hits: %d | Reads: %d | Writes: %d | Open matrices: %d\n",
+                tileSize, tileSize, budgetBytes >> 20, cachedBytes >> 20, peakBytes >> 20, hits, reads, writes, open.size());
+    }
+}
@@ -0,0 +1,177 @@
+package memory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A matrix kept out of the heap: square tiles in a scratch file, read through the
+ * TileStore's bounded cache. Tile (tr, tc) covers rows tr * tileSize .. and columns
+ * tc * tileSize ..; tiles are filled once (put) and afterwards only read (pin / unpin).
+ */
+public class TiledMatrix {
+
+    private final TileStore store;
+    private final long id;
+    private final int numRows;
+    private final int numCols;
+    private final int tileSize;
+    private final FileChannel channel; // deletes the scratch file when closed
+
+    TiledMatrix(TileStore store, long id, int numRows, int numCols, Path file) throws IOException {
+        this.store = store;
+        this.id = id;
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.tileSize = store.tileSize();
+        this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    /**
+     * Copies a matrix into tiles, one band of tileSize rows at a time; readRow(dst, i) must fill dst with row i.
+     */
+    public static TiledMatrix fromRows(TileStore store, int numRows, int numCols, ObjIntConsumer<double[]> readRow) {
+        TiledMatrix matrix = store.create(numRows, numCols);
+        int t = matrix.tileSize;
+        double[] row = new double[numCols];
+        for (int tr = 0; tr < matrix.tileRows(); tr++) {
+            double[][] band = new double[matrix.tileCols()][];
+            for (int tc = 0; tc < band.length; tc++) {
+                band[tc] = store.newTile();
+            }
+            for (int r = 0; r < t && tr * t + r < numRows; r++) {
+                readRow.accept(row, tr * t + r);
+                for (int tc = 0; tc < band.length; tc++) {
+                    System.arraycopy(row, tc * t, band[tc], r * t, matrix.tileWidth(tc));
+                }
+            }
+            for (int tc = 0; tc < band.length; tc++) {
+                matrix.put(tr, tc, band[tc]);
+            }
+        }
+        return matrix;
+    }
+
+    long id() {
+        return id;
+    }
+
+    FileChannel channel() {
+        return channel;
+    }
+
+    public int numRows() {
+        return numRows;
+    }
+
+    public int numCols() {
+        return numCols;
+    }
+
+    public int tileSize() {
+        return tileSize;
+    }
+
+    public int tileRows() {
+        return (numRows + tileSize - 1) / tileSize;
+    }
+
+    public int tileCols() {
+        return (numCols + tileSize - 1) / tileSize;
+    }
+
+    /**
+     * Rows actually covered by tile row tr (the last one may be partial).
+     */
+    public int tileHeight(int tr) {
+        return Math.min(tileSize, numRows - tr * tileSize);
+    }
+
+    /**
+     * Columns actually covered by tile column tc (the last one may be partial).
+     */
+    public int tileWidth(int tc) {
+        return Math.min(tileSize, numCols - tc * tileSize);
+    }
+
+    private int index(int tr, int tc) {
+        return tr * tileCols() + tc;
+    }
+
+    /**
+     * Tile (tr, tc), row-major with stride tileSize(); read-only, and only until unpin(tr, tc).
+     */
+    public double[] pin(int tr, int tc) {
+        return store.pin(this, index(tr, tc));
+    }
+
+    public void unpin(int tr, int tc) {
+        store.unpin(this, index(tr, tc));
+    }
+
+    /**
+     * Stores tile (tr, tc), a buffer from TileStore.newTile(); the store takes it over.
+     */
+    public void put(int tr, int tc, double[] tile) {
+        store.put(this, index(tr, tc), tile);
+    }
+
+    public TileStore getStore() {
+        return store;
+    }
+
+    /**
+     * Copies row `row` into dst (at least numCols() long), one tile at a time.
+     */
+    public void readRow(int row, double[] dst) {
+        int tr = row / tileSize;
+        int offset = (row % tileSize) * tileSize;
+        for (int tc = 0; tc < tileCols(); tc++) {
+            double[] tile = pin(tr, tc);
+            try {
+                System.arraycopy(tile, offset, dst, tc * tileSize, tileWidth(tc));
+            }
+            finally {
+                unpin(tr, tc);
+            }
+        }
+    }
+
+    /**
+     * The whole matrix in memory; only for results known to fit in the heap.
+     */
+    public double[][] toDense() {
+        double[][] rows = new double[numRows][numCols];
+        for (int tr = 0; tr < tileRows(); tr++) {
+            for (int tc = 0; tc < tileCols(); tc++) {
+                double[] tile = pin(tr, tc);
+                try {
+                    for (int r = 0; r < tileHeight(tr); r++) {
+                        System.arraycopy(tile, r * tileSize, rows[tr * tileSize + r], tc * tileSize, tileWidth(tc));
+                    }
+                }
+                finally {
+                    unpin(tr, tc);
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Drops the cached tiles and deletes the scratch file; the matrix is unusable afterwards.
+     */
+    public void delete() {
+        store.discard(this);
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("TiledMatrix: cannot delete the scratch file", e);
+        }
+    }
+}
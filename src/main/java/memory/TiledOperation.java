@@ -0,0 +1,178 @@
+package memory;
+
+/**
+ * One operation on out-of-core operands, computed one output tile at a time so the engine can
+ * spread the tiles over the executor. A task pins only the operand tiles it is reading, so the
+ * memory in use stays near a few tiles per worker whatever the size of the matrices.
+ */
+public abstract class TiledOperation {
+
+    protected final TiledMatrix result;
+    protected final int t;
+    private final VectorKernels kernels = VectorKernels.get();
+
+    private TiledOperation(TiledMatrix result) {
+        this.result = result;
+        this.t = result.tileSize();
+    }
+
+    public int tileCount() {
+        return result.tileRows() * result.tileCols();
+    }
+
+    /**
+     * Estimated multiply-adds (or additions) over the whole output, for metrics.
+     */
+    public abstract long work();
+
+    /**
+     * Computes output tile `index` (row-major over the tile grid). Tiles are independent, so they may run concurrently.
+     */
+    public void computeTile(int index) {
+        int tr = index / result.tileCols();
+        int tc = index % result.tileCols();
+        double[] out = result.getStore().newTile();
+        computeTile(tr, tc, out);
+        result.put(tr, tc, out);
+    }
+
+    protected abstract void computeTile(int tr, int tc, double[] out);
+
+    /** Valid once every tile has been computed. */
+    public TiledMatrix getResult() {
+        return result;
+    }
+
+    /** sign * (a x b). */
+    public static TiledOperation multiply(TiledMatrix a, TiledMatrix b, double sign) {
+        if (a.numCols() != b.numRows()) {
+            throw new IllegalArgumentException("Multiply: dimensions mismatch");
+        }
+        return new TiledOperation(a.getStore().create(a.numRows(), b.numCols())) {
+            @Override
+            public long work() {
+                return (long) a.numRows() * a.numCols() * b.numCols();
+            }
+
+            @Override
+            protected void computeTile(int tr, int tc, double[] out) {
+                int rows = result.tileHeight(tr);
+                int width = result.tileWidth(tc);
+                for (int tk = 0; tk < a.tileCols(); tk++) {
+                    int depth = a.tileWidth(tk);
+                    double[] left = a.pin(tr, tk);
+                    try {
+                        double[] right = b.pin(tk, tc);
+                        try {
+                            multiplyAdd(left, right, out, rows, depth, width, sign);
+                        }
+                        finally {
+                            b.unpin(tk, tc);
+                        }
+                    }
+                    finally {
+                        a.unpin(tr, tk);
+                    }
+                }
+            }
+        };
+    }
+
+    /** sign * (a + b). */
+    public static TiledOperation add(TiledMatrix a, TiledMatrix b, double sign) {
+        if (a.numRows() != b.numRows() || a.numCols() != b.numCols()) {
+            throw new IllegalArgumentException("Add: dimensions mismatch");
+        }
+        return new TiledOperation(a.getStore().create(a.numRows(), a.numCols())) {
+            @Override
+            public long work() {
+                return (long) a.numRows() * a.numCols();
+            }
+
+            @Override
+            protected void computeTile(int tr, int tc, double[] out) {
+                copy(a, tr, tc, out);
+                double[] right = b.pin(tr, tc);
+                try {
+                    addInto(right, out);
+                }
+                finally {
+                    b.unpin(tr, tc);
+                }
+                if (sign < 0) negateInPlace(out);
+            }
+        };
+    }
+
+    /** -a. */
+    public static TiledOperation negate(TiledMatrix a) {
+        return new TiledOperation(a.getStore().create(a.numRows(), a.numCols())) {
+            @Override
+            public long work() {
+                return (long) a.numRows() * a.numCols();
+            }
+
+            @Override
+            protected void computeTile(int tr, int tc, double[] out) {
+                copy(a, tr, tc, out);
+                negateInPlace(out);
+            }
+        };
+    }
+
+    /** a^T: output tile (i, j) is tile (j, i) of a, transposed. */
+    public static TiledOperation transpose(TiledMatrix a) {
+        return new TiledOperation(a.getStore().create(a.numCols(), a.numRows())) {
+            @Override
+            public long work() {
+                return (long) a.numRows() * a.numCols();
+            }
+
+            @Override
+            protected void computeTile(int tr, int tc, double[] out) {
+                double[] in = a.pin(tc, tr);
+                try {
+                    int rows = a.tileHeight(tc);
+                    int cols = a.tileWidth(tr);
+                    for (int r = 0; r < rows; r++) {
+                        for (int c = 0; c < cols; c++) {
+                            out[c * t + r] = in[r * t + c];
+                        }
+                    }
+                }
+                finally {
+                    a.unpin(tc, tr);
+                }
+            }
+        };
+    }
+
+    // out += sign * (left x right) over the valid rows x depth x width of three tiles
+    protected void multiplyAdd(double[] left, double[] right, double[] out, int rows, int depth, int width, double sign) {
+        for (int r = 0; r < rows; r++) {
+            for (int k = 0; k < depth; k++) {
+                double v = left[r * t + k];
+                if (v != 0.0) kernels.axpy(sign * v, right, k * t, out, r * t, width);
+            }
+        }
+    }
+
+    protected void copy(TiledMatrix a, int tr, int tc, double[] out) {
+        double[] in = a.pin(tr, tc);
+        try {
+            System.arraycopy(in, 0, out, 0, out.length);
+        }
+        finally {
+            a.unpin(tr, tc);
+        }
+    }
+
+    // padding stays zero: it is zero in every operand tile
+    protected void addInto(double[] in, double[] out) {
+        kernels.add(out, 0, in, 0, out.length);
+    }
+
+    protected void negateInPlace(double[] out) {
+        kernels.negate(out, 0, out.length);
+    }
+}
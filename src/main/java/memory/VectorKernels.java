@@ -0,0 +1,47 @@
+package memory;
+
+/**
+ * The element loops behind SharedVector, BlockedMultiplier and the fused kernels.
+ * A SIMD implementation built on the incubating Vector API is picked at class-load time
+ * when the JVM was started with --add-modules jdk.incubator.vector; otherwise, or with
+ * -Dlae.simd=false, the plain scalar loops are used.
+ */
+public abstract class VectorKernels {
+
+    private static final VectorKernels INSTANCE = select();
+
+    public static VectorKernels get() {
+        return INSTANCE;
+    }
+
+    private static VectorKernels select() {
+        if (!Boolean.parseBoolean(System.getProperty("lae.simd", "true"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return new ScalarKernels();
+        }
+        try {
+            // loaded reflectively so this class never links against the optional module
+            return (VectorKernels) Class.forName("memory.SimdKernels").getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarKernels();
+        }
+    }
+
+    /** a[aOff..aOff+len) += b[bOff..bOff+len) */
+    public abstract void add(double[] a, int aOff, double[] b, int bOff, int len);
+
+    /** a[off..off+len) = -a[off..off+len) */
+    public abstract void negate(double[] a, int off, int len);
+
+    /** sum of a[aOff+i] * b[bOff+i] */
+    public abstract double dot(double[] a, int aOff, double[] b, int bOff, int len);
+
+    /** y[yOff..yOff+len) += alpha * x[xOff..xOff+len) */
+    public abstract void axpy(double alpha, double[] x, int xOff, double[] y, int yOff, int len);
+
+    /** y[yOff..yOff+len) = alpha * x[xOff..xOff+len) */
+    public abstract void scale(double alpha, double[] x, int xOff, double[] y, int yOff, int len);
+
+    public abstract String describe();
+}
@@ -0,0 +1,46 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Bytes allocated on the heap by a set of threads, from the JVM's per-thread allocation
+ * counters (HotSpot's com.sun.management.ThreadMXBean). Always 0 where those are unavailable.
+ */
+public class AllocationCounter {
+
+    private final com.sun.management.ThreadMXBean threads;
+
+    public AllocationCounter() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean hotspot = null;
+        if (bean instanceof com.sun.management.ThreadMXBean candidate && candidate.isThreadAllocatedMemorySupported()) {
+            candidate.setThreadAllocatedMemoryEnabled(true);
+            hotspot = candidate;
+        }
+        this.threads = hotspot;
+    }
+
+    public boolean isSupported() {
+        return threads != null;
+    }
+
+    /**
+     * Total bytes allocated so far by every live platform thread (virtual threads count towards their carriers).
+     */
+    public long allocatedBytes() {
+        return threads == null ? 0 : allocatedBytes(threads.getAllThreadIds());
+    }
+
+    /**
+     * Total bytes allocated so far by the given threads; threads that have ended count as 0.
+     */
+    public long allocatedBytes(long[] threadIds) {
+        if (threads == null) return 0;
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threadIds)) {
+            if (bytes > 0) total += bytes;
+        }
+        return total;
+    }
+}
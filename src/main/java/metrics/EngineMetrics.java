@@ -0,0 +1,122 @@
+package metrics;
+
+import parser.ComputationNodeType;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Structured counters for one engine: totals per operation type and per worker.
+ * Read them with snapshot(), or over JMX after registerMBeans(); each node is
+ * also emitted as a NodeEvent when a flight recording is running.
+ */
+public class EngineMetrics {
+
+    private static final String DOMAIN = "spl.lae";
+
+    private final Map<ComputationNodeType, OperationStats> operations = new EnumMap<>(ComputationNodeType.class);
+    private final WorkerStats[] workers;
+    private final List<ObjectName> registered = new ArrayList<>();
+
+    public EngineMetrics(int numWorkers) {
+        for (ComputationNodeType type : ComputationNodeType.values()) {
+            if (type != ComputationNodeType.MATRIX) operations.put(type, new OperationStats());
+        }
+        workers = new WorkerStats[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            workers[i] = new WorkerStats(i);
+        }
+    }
+
+    /**
+     * Records a resolved node; event is the NodeEvent begun when the node was scheduled, or null.
+     */
+    public void recordNode(NodeSample sample, NodeEvent event) {
+        OperationStats stats = operations.get(sample.type());
+        if (stats != null) stats.record(sample);
+        if (event != null && event.shouldCommit()) {
+            event.fill(sample);
+            event.commit();
+        }
+    }
+
+    /**
+     * Records one task run by the given worker; tasks run on other threads are ignored.
+     */
+    public void recordTask(int workerId, long taskNanos, long lockWaitNanos) {
+        if (workerId >= 0 && workerId < workers.length) {
+            workers[workerId].record(taskNanos, lockWaitNanos);
+        }
+    }
+
+    public MetricsSnapshot snapshot() {
+        Map<ComputationNodeType, MetricsSnapshot.Operation> ops = new EnumMap<>(ComputationNodeType.class);
+        for (Map.Entry<ComputationNodeType, OperationStats> e : operations.entrySet()) {
+            OperationStats s = e.getValue();
+            ops.put(e.getKey(), new MetricsSnapshot.Operation(s.getCount(), s.getTasks(), s.getFlops(),
+                    s.getBytesMoved(), s.getWallNanos(), s.getQueuedNanos(), s.getExecutingNanos()));
+        }
+        List<MetricsSnapshot.Worker> ws = new ArrayList<>();
+        for (WorkerStats w : workers) {
+            ws.add(new MetricsSnapshot.Worker(w.getWorkerId(), w.getTasks(), w.getLockWaitNanos(), w.getTaskHistogram()));
+        }
+        return new MetricsSnapshot(Collections.unmodifiableMap(ops), Collections.unmodifiableList(ws));
+    }
+
+    /**
+     * Registers one MBean per operation type and per worker under
+     * spl.lae:engine=&lt;engineName&gt;,type=Operation|Worker,name=...
+     */
+    public synchronized void registerMBeans(String engineName) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        String prefix = DOMAIN + ":engine=" + ObjectName.quote(engineName);
+        for (Map.Entry<ComputationNodeType, OperationStats> e : operations.entrySet()) {
+            register(server, new ObjectName(prefix + ",type=Operation,name=" + e.getKey()), e.getValue());
+        }
+        for (WorkerStats w : workers) {
+            register(server, new ObjectName(prefix + ",type=Worker,name=worker-" + w.getWorkerId()), w);
+        }
+    }
+
+    private void register(MBeanServer server, ObjectName name, Object bean) throws JMException {
+        server.registerMBean(bean, name);
+        registered.add(name);
+    }
+
+    public synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            }
+            catch (JMException ignored) {
+                // already gone
+            }
+        }
+        registered.clear();
+    }
+
+    public String getReport() {
+        StringBuilder report = new StringBuilder("--- Metrics ---\n");
+        for (Map.Entry<ComputationNodeType, OperationStats> e : operations.entrySet()) {
+            OperationStats s = e.getValue();
+            if (s.getCount() == 0) continue;
+            report.append(String.format("Op: %s | Nodes: %d | Tasks: %d | FLOPs: %d | Bytes: %d | Wall: %d ns | Queued: %d ns | Executing: %d ns\n",
+                    e.getKey(), s.getCount(), s.getTasks(), s.getFlops(), s.getBytesMoved(),
+                    s.getWallNanos(), s.getQueuedNanos(), s.getExecutingNanos()));
+        }
+        for (WorkerStats w : workers) {
+            report.append(String.format("Worker %d | Tasks: %d | Lock wait: %d ns | Histogram: %s\n",
+                    w.getWorkerId(), w.getTasks(), w.getLockWaitNanos(), Arrays.toString(w.getTaskHistogram())));
+        }
+        return report.toString();
+    }
+}
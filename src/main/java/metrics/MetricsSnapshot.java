@@ -0,0 +1,22 @@
+package metrics;
+
+import parser.ComputationNodeType;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A point-in-time copy of an engine's metrics. Values are cumulative since the engine was created.
+ */
+public record MetricsSnapshot(Map<ComputationNodeType, Operation> operations, List<Worker> workers) {
+
+    public record Operation(long count, long tasks, long flops, long bytesMoved,
+                            long wallNanos, long queuedNanos, long executingNanos) {
+    }
+
+    /**
+     * taskHistogram is bucketed by WorkerStats.BUCKET_BOUNDS_NANOS.
+     */
+    public record Worker(int workerId, long tasks, long lockWaitNanos, long[] taskHistogram) {
+    }
+}
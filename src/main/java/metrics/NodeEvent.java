@@ -0,0 +1,60 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event spanning one operation node, from scheduling to resolution.
+ * Recorded only while a flight recording with this event enabled is running,
+ * e.g. java -XX:StartFlightRecording ...; otherwise begin/commit are close to free.
+ */
+@Name("spl.lae.Node")
+@Label("Engine Node")
+@Category({"Linear Algebra Engine"})
+@Description("One operation node computed by the engine")
+@StackTrace(false)
+public class NodeEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Rows")
+    int rows;
+
+    @Label("Columns")
+    int cols;
+
+    @Label("Tasks")
+    int tasks;
+
+    @Label("FLOPs")
+    long flops;
+
+    @Label("Bytes Moved")
+    @DataAmount
+    long bytesMoved;
+
+    @Label("Queued")
+    @Timespan
+    long queuedNanos;
+
+    @Label("Executing")
+    @Timespan
+    long executingNanos;
+
+    void fill(NodeSample sample) {
+        operation = sample.type().name();
+        rows = sample.rows();
+        cols = sample.cols();
+        tasks = sample.tasks();
+        flops = sample.flops();
+        bytesMoved = sample.bytesMoved();
+        queuedNanos = sample.queuedNanos();
+        executingNanos = sample.executingNanos();
+    }
+}
@@ -0,0 +1,11 @@
+package metrics;
+
+import parser.ComputationNodeType;
+
+/**
+ * What one resolved operation node cost. FLOPs and bytes are estimates from the operand
+ * shapes: reading every input once and writing the output once, 8 bytes per element.
+ */
+public record NodeSample(ComputationNodeType type, int rows, int cols, int tasks, long flops, long bytesMoved,
+                         long wallNanos, long queuedNanos, long executingNanos) {
+}
@@ -0,0 +1,37 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals for every node of one operation type.
+ * Queued time is summed over a node's tasks, from submission until a worker picks each one up;
+ * executing time is the tasks' run time. Both can exceed wall time when tasks run in parallel.
+ */
+public class OperationStats implements OperationStatsMBean {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder tasks = new LongAdder();
+    private final LongAdder flops = new LongAdder();
+    private final LongAdder bytesMoved = new LongAdder();
+    private final LongAdder wallNanos = new LongAdder();
+    private final LongAdder queuedNanos = new LongAdder();
+    private final LongAdder executingNanos = new LongAdder();
+
+    void record(NodeSample sample) {
+        count.increment();
+        tasks.add(sample.tasks());
+        flops.add(sample.flops());
+        bytesMoved.add(sample.bytesMoved());
+        wallNanos.add(sample.wallNanos());
+        queuedNanos.add(sample.queuedNanos());
+        executingNanos.add(sample.executingNanos());
+    }
+
+    @Override public long getCount() { return count.sum(); }
+    @Override public long getTasks() { return tasks.sum(); }
+    @Override public long getFlops() { return flops.sum(); }
+    @Override public long getBytesMoved() { return bytesMoved.sum(); }
+    @Override public long getWallNanos() { return wallNanos.sum(); }
+    @Override public long getQueuedNanos() { return queuedNanos.sum(); }
+    @Override public long getExecutingNanos() { return executingNanos.sum(); }
+}
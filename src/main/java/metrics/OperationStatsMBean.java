@@ -0,0 +1,14 @@
+package metrics;
+
+/**
+ * JMX view of one operation type's totals. Times are in nanoseconds.
+ */
+public interface OperationStatsMBean {
+    long getCount();
+    long getTasks();
+    long getFlops();
+    long getBytesMoved();
+    long getWallNanos();
+    long getQueuedNanos();
+    long getExecutingNanos();
+}
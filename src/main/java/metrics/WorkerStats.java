@@ -0,0 +1,41 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-worker task counts, task run-time histogram and time blocked on SharedVector locks.
+ */
+public class WorkerStats implements WorkerStatsMBean {
+
+    /** Upper bounds of the histogram buckets: 10us, 100us, 1ms, 10ms, 100ms, then everything longer. */
+    public static final long[] BUCKET_BOUNDS_NANOS = {10_000, 100_000, 1_000_000, 10_000_000, 100_000_000};
+
+    private final int workerId;
+    private final LongAdder tasks = new LongAdder();
+    private final LongAdder lockWaitNanos = new LongAdder();
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKET_BOUNDS_NANOS.length + 1);
+
+    WorkerStats(int workerId) {
+        this.workerId = workerId;
+    }
+
+    void record(long taskNanos, long lockWait) {
+        tasks.increment();
+        lockWaitNanos.add(lockWait);
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_NANOS.length && taskNanos >= BUCKET_BOUNDS_NANOS[bucket]) bucket++;
+        histogram.incrementAndGet(bucket);
+    }
+
+    @Override public int getWorkerId() { return workerId; }
+    @Override public long getTasks() { return tasks.sum(); }
+    @Override public long getLockWaitNanos() { return lockWaitNanos.sum(); }
+
+    @Override
+    public long[] getTaskHistogram() {
+        long[] counts = new long[histogram.length()];
+        for (int i = 0; i < counts.length; i++) counts[i] = histogram.get(i);
+        return counts;
+    }
+}
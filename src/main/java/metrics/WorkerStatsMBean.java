@@ -0,0 +1,12 @@
+package metrics;
+
+/**
+ * JMX view of one worker. The histogram counts tasks by run time, one bucket per
+ * bound in WorkerStats.BUCKET_BOUNDS_NANOS plus a last bucket for longer tasks.
+ */
+public interface WorkerStatsMBean {
+    int getWorkerId();
+    long getTasks();
+    long getLockWaitNanos();
+    long[] getTaskHistogram();
+}
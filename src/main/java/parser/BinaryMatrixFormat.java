@@ -0,0 +1,198 @@
+package parser;
+
+import memory.SharedMatrix;
+import memory.TileStore;
+import memory.TiledMatrix;
+import memory.TiledOperation;
+import memory.VectorOrientation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compact binary container for one matrix, little-endian throughout:
+ * <pre>
+ *   magic "LAEM" | version (int) | orientation (int, 0 = row-major, 1 = column-major)
+ *   | rows (int) | cols (int) | reserved (int) | rows * cols raw doubles in stored order
+ * </pre>
+ * The data section starts at byte 24 so it is 8-byte aligned. Reading memory-maps the file
+ * and moves the doubles into SharedMatrix storage in bulk, with no decimal parsing.
+ */
+public class BinaryMatrixFormat {
+
+    public static final String EXTENSION = ".lmat";
+
+    private static final int MAGIC = 0x4D45414C; // "LAEM" read as a little-endian int
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final long MAP_CHUNK_BYTES = 1L << 30; // one mapping is limited to 2 GB
+
+    private BinaryMatrixFormat() {}
+
+    private record Header(int rows, int cols, VectorOrientation orientation) {}
+
+    private static Header readHeader(FileChannel channel, Path path) throws IOException {
+        if (channel.size() < HEADER_BYTES) {
+            throw new IOException("Not a matrix file (too short): " + path);
+        }
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt() != MAGIC) throw new IOException("Not a matrix file (bad magic): " + path);
+        if (header.getInt() != VERSION) throw new IOException("Unsupported matrix file version: " + path);
+        int orientationCode = header.getInt();
+        int rows = header.getInt();
+        int cols = header.getInt();
+        if (rows < 0 || cols < 0 || (orientationCode != 0 && orientationCode != 1)) {
+            throw new IOException("Corrupt matrix file header: " + path);
+        }
+        if (channel.size() < HEADER_BYTES + (long) rows * cols * Double.BYTES) {
+            throw new IOException("Matrix file is truncated: " + path);
+        }
+        return new Header(rows, cols, orientationCode == 0 ? VectorOrientation.ROW_MAJOR : VectorOrientation.COLUMN_MAJOR);
+    }
+
+    public static SharedMatrix read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Header header = readHeader(channel, path);
+            long count = (long) header.rows() * header.cols();
+            if (count > Integer.MAX_VALUE - 8) {
+                throw new IOException("Matrix file too large for in-memory storage: " + path);
+            }
+
+            double[] flat = new double[(int) count];
+            int filled = 0;
+            while (filled < flat.length) {
+                long position = HEADER_BYTES + (long) filled * Double.BYTES;
+                int chunk = (int) Math.min(flat.length - filled, MAP_CHUNK_BYTES / Double.BYTES);
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, (long) chunk * Double.BYTES);
+                DoubleBuffer doubles = mapped.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+                doubles.get(flat, filled, chunk);
+                filled += chunk;
+            }
+
+            SharedMatrix matrix = new SharedMatrix();
+            matrix.loadFlat(flat, header.rows(), header.cols(), header.orientation());
+            return matrix;
+        }
+    }
+
+    /**
+     * Reads the matrix straight into scratch-file tiles, one stored row (or column) at a time,
+     * so it never has to fit in the heap. A column-major file is tiled as stored and then
+     * transposed tile by tile.
+     */
+    public static TiledMatrix readTiled(Path path, TileStore store) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Header header = readHeader(channel, path);
+            boolean rowMajor = header.orientation() == VectorOrientation.ROW_MAJOR;
+            int vectors = rowMajor ? header.rows() : header.cols();
+            int length = rowMajor ? header.cols() : header.rows();
+            ByteBuffer buffer = ByteBuffer.allocate(Math.max(length, 1) * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            TiledMatrix stored = TiledMatrix.fromRows(store, vectors, length, (dst, i) -> {
+                buffer.clear().limit(length * Double.BYTES);
+                long position = HEADER_BYTES + (long) i * length * Double.BYTES;
+                try {
+                    while (buffer.hasRemaining()) {
+                        if (channel.read(buffer, position + buffer.position()) < 0) {
+                            throw new IOException("Matrix file is truncated: " + path);
+                        }
+                    }
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                buffer.flip();
+                buffer.asDoubleBuffer().get(dst, 0, length);
+            });
+            if (rowMajor) return stored;
+            TiledOperation transpose = TiledOperation.transpose(stored);
+            for (int i = 0; i < transpose.tileCount(); i++) transpose.computeTile(i);
+            stored.delete();
+            return transpose.getResult();
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Writes the matrix row-major, one row at a time.
+     */
+    public static void write(SharedMatrix matrix, Path path) throws IOException {
+        int rows = matrix.numRows();
+        int cols = matrix.numCols();
+        double[] row = new double[cols];
+        try (FileChannel channel = openForWrite(path, rows, cols)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Math.max(cols, 1) * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < rows; i++) {
+                matrix.readRow(i, row);
+                writeRow(channel, buffer, row);
+            }
+        }
+    }
+
+    /**
+     * Writes the matrix row-major one tile at a time: each tile row lands at its own offset,
+     * so every tile is pinned once.
+     */
+    public static void write(TiledMatrix matrix, Path path) throws IOException {
+        int rows = matrix.numRows();
+        int cols = matrix.numCols();
+        int t = matrix.tileSize();
+        try (FileChannel channel = openForWrite(path, rows, cols)) {
+            ByteBuffer buffer = ByteBuffer.allocate(t * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int tr = 0; tr < matrix.tileRows(); tr++) {
+                for (int tc = 0; tc < matrix.tileCols(); tc++) {
+                    int width = matrix.tileWidth(tc);
+                    double[] tile = matrix.pin(tr, tc);
+                    try {
+                        for (int r = 0; r < matrix.tileHeight(tr); r++) {
+                            buffer.clear();
+                            buffer.asDoubleBuffer().put(tile, r * t, width);
+                            buffer.limit(width * Double.BYTES);
+                            long position = HEADER_BYTES + ((long) (tr * t + r) * cols + (long) tc * t) * Double.BYTES;
+                            while (buffer.hasRemaining()) channel.write(buffer, position + buffer.position());
+                        }
+                    }
+                    finally {
+                        matrix.unpin(tr, tc);
+                    }
+                }
+            }
+        }
+    }
+
+    public static void write(double[][] matrix, Path path) throws IOException {
+        int rows = matrix.length;
+        int cols = rows == 0 ? 0 : matrix[0].length;
+        try (FileChannel channel = openForWrite(path, rows, cols)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Math.max(cols, 1) * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (double[] row : matrix) {
+                writeRow(channel, buffer, row);
+            }
+        }
+    }
+
+    private static FileChannel openForWrite(Path path, int rows, int cols) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(0).putInt(rows).putInt(cols).putInt(0);
+        header.flip();
+        while (header.hasRemaining()) channel.write(header);
+        return channel;
+    }
+
+    private static void writeRow(FileChannel channel, ByteBuffer buffer, double[] row) throws IOException {
+        buffer.clear();
+        buffer.asDoubleBuffer().put(row);
+        buffer.limit(row.length * Double.BYTES);
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+}
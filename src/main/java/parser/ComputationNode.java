@@ -1,5 +1,9 @@
 package parser;
 
+import memory.SharedMatrix;
+import memory.SparseMatrix;
+import memory.TiledMatrix;
+
 import java.util.List;
 
 public class ComputationNode {
@@ -7,6 +11,10 @@ public class ComputationNode {
     private ComputationNodeType nodeType;
     private List<ComputationNode> children = null;
     private double[][] matrix = null; // only used for MATRIX nodes
+    private SharedMatrix sharedMatrix = null; // a MATRIX node's value still in engine storage
+    private SparseMatrix sparseMatrix = null; // a MATRIX node's value in compressed sparse form
+    private TiledMatrix tiledMatrix = null; // a MATRIX node's value in out-of-core tiles
+    private boolean negated = false; // the operation's result is negated (set by the optimizer)
 
     public ComputationNode(String operatorStr, List<ComputationNode> children) throws IllegalArgumentException {
         this.nodeType = mapOperator(operatorStr);
@@ -38,6 +46,16 @@ public class ComputationNode {
         this.matrix = matrix;
     }
 
+    public ComputationNode(SharedMatrix matrix) {
+        this.nodeType = ComputationNodeType.MATRIX;
+        this.sharedMatrix = matrix;
+    }
+
+    public ComputationNode(TiledMatrix matrix) {
+        this.nodeType = ComputationNodeType.MATRIX;
+        this.tiledMatrix = matrix;
+    }
+
     public ComputationNodeType getNodeType() {
         return nodeType;
     }
@@ -46,6 +64,17 @@ public class ComputationNode {
         return children;
     }
 
+    /**
+     * True if this operation's result must be negated, i.e. a NEGATE was folded into it.
+     */
+    public boolean isNegated() {
+        return negated;
+    }
+
+    public void setNegated(boolean negated) {
+        this.negated = negated;
+    }
+
     /**
      * Recursively finds the first resolvable node in the tree.
      * A resolvable node is defined as a node that is not of type MATRIX,
@@ -88,14 +117,142 @@ public class ComputationNode {
         this.nodeType = ComputationNodeType.MATRIX;
         this.children = null;
         this.matrix = matrix;
+        this.sharedMatrix = null;
+        this.sparseMatrix = null;
+        this.tiledMatrix = null;
+        this.negated = false;
+    }
+
+    /**
+     * Resolves this node with a matrix still held in engine storage.
+     * It is only copied out into a double[][] if getMatrix() is called.
+     */
+    public void resolve(SharedMatrix matrix) {
+        this.nodeType = ComputationNodeType.MATRIX;
+        this.children = null;
+        this.matrix = null;
+        this.sharedMatrix = matrix;
+        this.sparseMatrix = null;
+        this.tiledMatrix = null;
+        this.negated = false;
+    }
+
+    /**
+     * Resolves this node with a sparse matrix; a dense copy is only made if getMatrix() is called.
+     */
+    public void resolve(SparseMatrix matrix) {
+        this.nodeType = ComputationNodeType.MATRIX;
+        this.children = null;
+        this.matrix = null;
+        this.sharedMatrix = null;
+        this.sparseMatrix = matrix;
+        this.tiledMatrix = null;
+        this.negated = false;
+    }
+
+    /**
+     * Resolves this node with an out-of-core matrix; it is only read into the heap if getMatrix() is called.
+     */
+    public void resolve(TiledMatrix matrix) {
+        this.nodeType = ComputationNodeType.MATRIX;
+        this.children = null;
+        this.matrix = null;
+        this.sharedMatrix = null;
+        this.sparseMatrix = null;
+        this.tiledMatrix = matrix;
+        this.negated = false;
+    }
+
+    /**
+     * True if the value is held in engine storage, so getSharedMatrix() does not copy.
+     */
+    public boolean hasSharedMatrix() {
+        return sharedMatrix != null;
+    }
+
+    public boolean isSparse() {
+        return sparseMatrix != null;
+    }
+
+    /**
+     * The node's sparse matrix, or null if it is held densely.
+     */
+    public SparseMatrix getSparseMatrix() {
+        return sparseMatrix;
+    }
+
+    public boolean isTiled() {
+        return tiledMatrix != null;
+    }
+
+    /**
+     * The node's out-of-core matrix, or null if it is held in memory.
+     */
+    public TiledMatrix getTiledMatrix() {
+        return tiledMatrix;
     }
 
     public double[][] getMatrix() {
+        if (matrix == null && sharedMatrix != null) {
+            matrix = sharedMatrix.readRowMajor();
+        }
+        if (matrix == null && sparseMatrix != null) {
+            matrix = sparseMatrix.toDense();
+        }
+        if (matrix == null && tiledMatrix != null) {
+            matrix = tiledMatrix.toDense();
+        }
         if (matrix == null) {
             throw new IllegalStateException("This node does not contain a matrix.");
         }
         return matrix;
     }
 
+    /**
+     * Dimensions of this MATRIX node as {rows, cols}, without materializing it.
+     */
+    public int[] getMatrixShape() {
+        if (matrix == null && sharedMatrix != null) {
+            return new int[] {sharedMatrix.numRows(), sharedMatrix.numCols()};
+        }
+        if (matrix == null && sparseMatrix != null) {
+            return new int[] {sparseMatrix.numRows(), sparseMatrix.numCols()};
+        }
+        if (matrix == null && tiledMatrix != null) {
+            return new int[] {tiledMatrix.numRows(), tiledMatrix.numCols()};
+        }
+        double[][] m = getMatrix();
+        return new int[] {m.length, m.length == 0 ? 0 : m[0].length};
+    }
+
+    /**
+     * The node's matrix as a SharedMatrix, without materializing a double[][] if it is
+     * still in engine storage.
+     */
+    public SharedMatrix getSharedMatrix() {
+        if (sharedMatrix == null) {
+            sharedMatrix = new SharedMatrix(getMatrix());
+        }
+        return sharedMatrix;
+    }
+
+    /**
+     * Copies one row of this MATRIX node into dst, from whichever storage holds it.
+     */
+    public void readRow(int row, double[] dst) {
+        if (matrix == null && sharedMatrix != null) {
+            sharedMatrix.readRow(row, dst);
+        }
+        else if (matrix == null && sparseMatrix != null) {
+            sparseMatrix.readRow(row, dst);
+        }
+        else if (matrix == null && tiledMatrix != null) {
+            tiledMatrix.readRow(row, dst);
+        }
+        else {
+            System.arraycopy(getMatrix()[row], 0, dst, 0, dst.length);
+        }
+    }
+
 
 }
\ No newline at end of file
@@ -1,8 +1,11 @@
 package parser;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import memory.TileStore;
 
 import java.io.File;
 import java.io.IOException;
@@ -12,25 +15,63 @@ import java.util.*;
 public class InputParser {
 
     private final ObjectMapper mapper = new ObjectMapper();
+    private final boolean streaming; // parse from tokens instead of building a JsonNode tree
+    private final TileStore tiles; // non-null: matrix files are read into scratch-file tiles
+
+    // {"file": "a.lmat"} stands for a matrix stored in BinaryMatrixFormat, relative to the input file
+    private static final String FILE_FIELD = "file";
+
+    public InputParser() {
+        this(false);
+    }
+
+    /**
+     * In streaming mode the file is read token by token and matrix numbers go straight
+     * into primitive rows, so no JsonNode is ever built per element. The resulting tree is the same.
+     */
+    public InputParser(boolean streaming) {
+        this(streaming, null);
+    }
+
+    /**
+     * With a TileStore, {"file": ...} matrices are read straight into out-of-core tiles instead of the heap.
+     */
+    public InputParser(boolean streaming, TileStore tiles) {
+        this.streaming = streaming;
+        this.tiles = tiles;
+    }
 
     public ComputationNode parse(String inputPath) throws ParseException {
-        try {
-            File inputFile = new File(inputPath);
-            JsonNode rootJsonNode = mapper.readTree(inputFile);
-            ComputationNode root = parseJsonNode(rootJsonNode);
+        if (streaming) {
+            return parseStreaming(inputPath);
+        }
+        File inputFile = new File(inputPath);
+        try (JsonParser parser = mapper.getFactory().createParser(inputFile)) {
+            JsonNode rootJsonNode = mapper.readTree(parser);
+            if (rootJsonNode == null) {
+                throw new ParseException("Failed to read the input JSON file: empty input", 0);
+            }
+            // the same checks as the streaming mode, so a file parses or fails alike in both
+            if (parser.nextToken() != null) {
+                throw new ParseException("Unexpected content after the root node.", offset(parser));
+            }
+            ComputationNode root = parseJsonNode(rootJsonNode, inputFile.getAbsoluteFile().getParentFile());
             return root;
         } catch (IOException e) {
             throw new ParseException("Failed to read the input JSON file: " + e.getMessage(), 0);
         }
     }
 
-    private ComputationNode parseJsonNode(JsonNode jsonNode) throws ParseException {
+    private ComputationNode parseJsonNode(JsonNode jsonNode, File baseDir) throws ParseException {
+        if (jsonNode.has(FILE_FIELD) && jsonNode.get(FILE_FIELD).isTextual()) {
+            return loadMatrixFile(jsonNode.get(FILE_FIELD).asText(), baseDir);
+        }
         if (jsonNode.has("operator") && jsonNode.has("operands")) {
             String operatorStr = jsonNode.get("operator").asText();
             ArrayNode operandJsonNodes = (ArrayNode) jsonNode.get("operands");
             List<ComputationNode> operands = new ArrayList<>();
             for (int i = 0; i < operandJsonNodes.size(); i++) {
-                operands.add(parseJsonNode(operandJsonNodes.get(i)));
+                operands.add(parseJsonNode(operandJsonNodes.get(i), baseDir));
             }
             return new ComputationNode(operatorStr, operands);
         }
@@ -65,4 +106,123 @@ public class InputParser {
         else { throw new ParseException("Invalid node structure: " + jsonNode.toString(), 0); }
     }
 
+    private ComputationNode parseStreaming(String inputPath) throws ParseException {
+        try (JsonParser parser = mapper.getFactory().createParser(new File(inputPath))) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                throw new ParseException("Failed to read the input JSON file: empty input", 0);
+            }
+            ComputationNode root = parseValue(parser, token, new File(inputPath).getAbsoluteFile().getParentFile());
+            if (parser.nextToken() != null) {
+                throw new ParseException("Unexpected content after the root node.", offset(parser));
+            }
+            return root;
+        } catch (IOException e) {
+            throw new ParseException("Failed to read the input JSON file: " + e.getMessage(), 0);
+        }
+    }
+
+    private ComputationNode parseValue(JsonParser parser, JsonToken token, File baseDir) throws IOException, ParseException {
+        if (token == JsonToken.START_OBJECT) {
+            return parseOperatorObject(parser, baseDir);
+        }
+        if (token == JsonToken.START_ARRAY) {
+            return parseMatrix(parser);
+        }
+        throw new ParseException("Invalid node structure: " + parser.getText(), offset(parser));
+    }
+
+    private ComputationNode parseOperatorObject(JsonParser parser, File baseDir) throws IOException, ParseException {
+        String operatorStr = null;
+        String file = null;
+        List<ComputationNode> operands = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (field.equals("operator")) {
+                operatorStr = value.isScalarValue() ? parser.getValueAsString() : "";
+                parser.skipChildren();
+            }
+            else if (field.equals("operands") && value == JsonToken.START_ARRAY) {
+                operands = new ArrayList<>();
+                for (JsonToken t = parser.nextToken(); t != JsonToken.END_ARRAY; t = parser.nextToken()) {
+                    operands.add(parseValue(parser, t, baseDir));
+                }
+            }
+            else if (field.equals(FILE_FIELD) && value == JsonToken.VALUE_STRING) {
+                file = parser.getText();
+            }
+            else {
+                parser.skipChildren();
+            }
+        }
+        if (file != null) {
+            return loadMatrixFile(file, baseDir);
+        }
+        if (operatorStr == null || operands == null) {
+            throw new ParseException("Invalid node structure: object without operator and operands", offset(parser));
+        }
+        return new ComputationNode(operatorStr, operands);
+    }
+
+    private ComputationNode parseMatrix(JsonParser parser) throws IOException, ParseException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            throw new ParseException("Empty array cannot be parsed as DataNode.", offset(parser));
+        }
+        if (token.isNumeric()) {
+            throw new ParseException("Vectors (1D arrays) are not supported as standalone nodes.", offset(parser));
+        }
+        List<double[]> rows = new ArrayList<>();
+        int width = -1; // fixed by the first row
+        for (; token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+            if (token != JsonToken.START_ARRAY) {
+                throw new ParseException("Invalid matrix row: " + parser.getText(), offset(parser));
+            }
+            double[] row = width < 0 ? new double[16] : new double[width];
+            int size = 0;
+            for (JsonToken t = parser.nextToken(); t != JsonToken.END_ARRAY; t = parser.nextToken()) {
+                if (size == row.length) {
+                    if (width >= 0) {
+                        throw new ParseException("Inconsistent row sizes in matrix.", offset(parser));
+                    }
+                    row = Arrays.copyOf(row, row.length * 2);
+                }
+                // same coercions as JsonNode.asDouble in the tree parser
+                row[size++] = parser.getValueAsDouble();
+                parser.skipChildren();
+            }
+            if (width < 0) {
+                width = size;
+                row = Arrays.copyOf(row, size);
+            }
+            else if (size != width) {
+                throw new ParseException("Inconsistent row sizes in matrix.", offset(parser));
+            }
+            rows.add(row);
+        }
+        return new ComputationNode(rows.toArray(new double[0][]));
+    }
+
+    private ComputationNode loadMatrixFile(String file, File baseDir) throws ParseException {
+        File matrixFile = new File(file);
+        if (!matrixFile.isAbsolute()) {
+            matrixFile = new File(baseDir, file);
+        }
+        try {
+            if (tiles != null) {
+                return new ComputationNode(BinaryMatrixFormat.readTiled(matrixFile.toPath(), tiles));
+            }
+            return new ComputationNode(BinaryMatrixFormat.read(matrixFile.toPath()));
+        } catch (IOException e) {
+            throw new ParseException("Failed to read matrix file " + file + ": " + e.getMessage(), 0);
+        }
+    }
+
+    private static int offset(JsonParser parser) {
+        long offset = parser.currentLocation().getCharOffset();
+        if (offset < 0) offset = parser.currentLocation().getByteOffset(); // byte-backed input
+        return (int) Math.max(0, Math.min(offset, Integer.MAX_VALUE));
+    }
+
 }
\ No newline at end of file
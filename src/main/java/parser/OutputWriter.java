@@ -1,13 +1,22 @@
 package parser;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import memory.SharedMatrix;
 
 public class OutputWriter {
 
     private static final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private static final int BUFFER_SIZE = 1 << 16;
 
     public static class ResultMatrix {
         public double[][] result;
@@ -31,4 +40,50 @@ public class OutputWriter {
         mapper.writerWithDefaultPrettyPrinter().writeValue(file, new ErrorMessage(error));
     }
 
+    /**
+     * Writes {"result": [[...], ...]} row by row with a JsonGenerator, compact, optionally gzip-compressed.
+     */
+    public static void writeStreaming(double[][] matrix, String filePath, boolean gzip) throws IOException {
+        try (JsonGenerator generator = openResult(filePath, gzip)) {
+            for (double[] row : matrix) {
+                generator.writeArray(row, 0, row.length);
+            }
+            closeResult(generator);
+        }
+    }
+
+    /**
+     * Same format as above, read row by row straight from the matrix storage
+     * instead of first materializing a double[][] through readRowMajor.
+     */
+    public static void writeStreaming(SharedMatrix matrix, String filePath, boolean gzip) throws IOException {
+        try (JsonGenerator generator = openResult(filePath, gzip)) {
+            int numRows = matrix.numRows();
+            double[] row = new double[matrix.numCols()];
+            for (int i = 0; i < numRows; i++) {
+                matrix.readRow(i, row);
+                generator.writeArray(row, 0, row.length);
+            }
+            closeResult(generator);
+        }
+    }
+
+    private static JsonGenerator openResult(String filePath, boolean gzip) throws IOException {
+        OutputStream out = new FileOutputStream(filePath);
+        if (gzip) {
+            out = new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        out = new BufferedOutputStream(out, BUFFER_SIZE);
+        JsonGenerator generator = mapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        generator.writeStartObject();
+        generator.writeFieldName("result");
+        generator.writeStartArray();
+        return generator;
+    }
+
+    private static void closeResult(JsonGenerator generator) throws IOException {
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
 }
@@ -0,0 +1,47 @@
+package scheduling;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A batch of tasks and the future that completes when the last of them has finished.
+ * The first task to throw completes the future exceptionally. Once the future is done
+ * (failed, cancelled, or timed out by the caller), tasks that have not started yet are skipped.
+ * Tasks already running are not interrupted.
+ */
+final class AsyncBatch {
+
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+    private final List<Runnable> tasks = new ArrayList<>();
+    private final AtomicInteger remaining = new AtomicInteger(0);
+
+    AsyncBatch(Iterable<Runnable> batch) {
+        for (Runnable task : batch) {
+            Runnable wrapper = () -> {
+                try {
+                    if (!future.isDone()) task.run();
+                }
+                catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+                finally {
+                    if (remaining.decrementAndGet() == 0) future.complete(null);
+                }
+            };
+            // keep what an adaptive executor needs to place and time the task
+            tasks.add(task instanceof CostedTask costed ? costed.withBody(wrapper) : wrapper);
+        }
+        remaining.set(tasks.size());
+        if (tasks.isEmpty()) future.complete(null);
+    }
+
+    List<Runnable> tasks() {
+        return tasks;
+    }
+
+    CompletableFuture<Void> future() {
+        return future;
+    }
+}
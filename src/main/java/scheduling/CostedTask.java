@@ -0,0 +1,26 @@
+package scheduling;
+
+/**
+ * A task that says what it does and how much of it: `cost` units (elements, multiply-adds)
+ * of operation `label`. In ADAPTIVE mode the executor times it to learn each worker's speed
+ * per operation, and runs it on `worker` if that is set (>= 0), else where it should finish first.
+ * Other executors run it as a plain Runnable.
+ */
+public record CostedTask(String label, long cost, int worker, Runnable body) implements Runnable {
+
+    public CostedTask(String label, long cost, Runnable body) {
+        this(label, cost, -1, body);
+    }
+
+    @Override
+    public void run() {
+        body.run();
+    }
+
+    /**
+     * The same label, cost and worker around another body, e.g. a wrapper of this task.
+     */
+    public CostedTask withBody(Runnable other) {
+        return new CostedTask(label, cost, worker, other);
+    }
+}
@@ -0,0 +1,19 @@
+package scheduling;
+
+/**
+ * How tasks are handed to workers.
+ * FATIGUE_HEAP: each task goes to the least tired idle worker; submit blocks until one is idle.
+ * WORK_STEALING: tasks are queued on per-worker deques without blocking, and idle workers
+ * steal from the most tired worker that still has queued work.
+ * ADAPTIVE: work stealing, but the executor measures every worker's speed per operation
+ * (see CostedTask, ThroughputModel) and deals work so that faster workers get proportionally
+ * more of it; steals then take from the longest queue.
+ * VIRTUAL_THREADS: no TiredExecutor; every task gets a virtual thread and a semaphore bounds
+ * how many run at once (see VirtualThreadExecutor).
+ */
+public enum SchedulingMode {
+    FATIGUE_HEAP,
+    WORK_STEALING,
+    ADAPTIVE,
+    VIRTUAL_THREADS
+}
@@ -0,0 +1,88 @@
+package scheduling;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the engine needs from an executor. TiredExecutor runs tasks on a fixed set of
+ * TiredThread platform threads; VirtualThreadExecutor starts a virtual thread per task.
+ */
+public interface TaskExecutor {
+
+    /**
+     * TiredExecutor for FATIGUE_HEAP, WORK_STEALING and ADAPTIVE; for VIRTUAL_THREADS a VirtualThreadExecutor
+     * running at most min(numThreads, carrier threads) tasks at a time.
+     */
+    static TaskExecutor create(int numThreads, SchedulingMode mode) {
+        if (mode == SchedulingMode.VIRTUAL_THREADS) {
+            return new VirtualThreadExecutor(Math.min(numThreads, VirtualThreadExecutor.carrierThreads()));
+        }
+        return new TiredExecutor(numThreads, mode);
+    }
+
+    /**
+     * Id of the worker (or virtual-thread slot) running the calling task, or -1 outside any executor.
+     */
+    static int currentWorkerId() {
+        if (Thread.currentThread() instanceof TiredThread worker) return worker.getWorkerId();
+        return VirtualThreadExecutor.currentSlotId();
+    }
+
+    void submit(Runnable task);
+
+    /**
+     * Submits a batch of tasks and returns once they are handed over, without waiting for them to finish.
+     */
+    void submitBatch(Iterable<Runnable> tasks);
+
+    /**
+     * Submits the tasks and blocks until every submitted task has finished.
+     */
+    void submitAll(Iterable<Runnable> tasks);
+
+    /**
+     * Submits a batch without blocking the caller. The future completes when every task of
+     * this batch (and no other) has finished, or exceptionally with the first task failure.
+     * Cancelling it, or timing it out (orTimeout), skips the tasks that have not started yet.
+     */
+    default CompletableFuture<Void> submitAsync(Iterable<Runnable> tasks) {
+        AsyncBatch batch = new AsyncBatch(tasks);
+        submitBatch(batch.tasks());
+        return batch.future();
+    }
+
+    /**
+     * submitAsync with a deadline: past it the future fails with a TimeoutException and the
+     * tasks that have not started are skipped.
+     */
+    default CompletableFuture<Void> submitAsync(Iterable<Runnable> tasks, long timeout, TimeUnit unit) {
+        return submitAsync(tasks).orTimeout(timeout, unit);
+    }
+
+    /**
+     * Blocks until every submitted task has finished.
+     */
+    void awaitAll();
+
+    /**
+     * Most tasks that run at the same time; worker ids are below this.
+     */
+    int getParallelism();
+
+    /**
+     * The speeds this executor has measured per worker and operation (see CostedTask), or null
+     * if it does not measure them; only TiredExecutor in ADAPTIVE mode does.
+     */
+    default ThroughputModel getThroughputModel() {
+        return null;
+    }
+
+    /**
+     * Ids of the platform threads that run tasks, for per-thread accounting; empty if they are not fixed.
+     */
+    long[] getWorkerThreadIds();
+
+    String getWorkerReport();
+
+    void shutdown() throws InterruptedException;
+}
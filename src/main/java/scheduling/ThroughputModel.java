@@ -0,0 +1,67 @@
+package scheduling;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Measured speed of every worker on every operation label, in cost units per nanosecond,
+ * smoothed so the model follows workers that slow down or speed up (other load on the core,
+ * frequency changes). Speeds are reported relative to the mean worker, so 1.0 is average;
+ * a worker with no measurement yet for a label is assumed average.
+ */
+public class ThroughputModel {
+
+    private static final double SMOOTHING = 0.2; // weight of the newest measurement
+    private static final long MIN_SAMPLE_NANOS = 2_000; // shorter tasks are mostly dispatch noise
+
+    private final int numWorkers;
+    private final Map<String, double[]> unitsPerNano = new TreeMap<>(); // 0 = no measurement yet
+    private final Map<String, Long> samples = new TreeMap<>();
+
+    public ThroughputModel(int numWorkers) {
+        this.numWorkers = numWorkers;
+    }
+
+    public synchronized void record(int worker, String label, long cost, long nanos) {
+        if (worker < 0 || worker >= numWorkers || cost <= 0 || nanos < MIN_SAMPLE_NANOS) return;
+        double[] speeds = unitsPerNano.computeIfAbsent(label, l -> new double[numWorkers]);
+        double measured = (double) cost / nanos;
+        speeds[worker] = speeds[worker] == 0 ? measured : (1 - SMOOTHING) * speeds[worker] + SMOOTHING * measured;
+        samples.merge(label, 1L, Long::sum);
+    }
+
+    /**
+     * Every worker's speed on label relative to the mean worker; all 1.0 while nothing is known.
+     */
+    public synchronized double[] relativeSpeeds(String label) {
+        double[] relative = new double[numWorkers];
+        double[] speeds = unitsPerNano.get(label);
+        double sum = 0;
+        int known = 0;
+        if (speeds != null) {
+            for (double s : speeds) {
+                if (s > 0) {
+                    sum += s;
+                    known++;
+                }
+            }
+        }
+        double mean = known == 0 ? 0 : sum / known;
+        for (int w = 0; w < numWorkers; w++) {
+            relative[w] = mean == 0 || speeds[w] == 0 ? 1.0 : speeds[w] / mean;
+        }
+        return relative;
+    }
+
+    public synchronized String getReport() {
+        StringBuilder report = new StringBuilder("--- Throughput ---\n");
+        for (String label : unitsPerNano.keySet()) {
+            report.append(String.format("Op: %s | Samples: %d | Relative speed:", label, samples.get(label)));
+            for (double s : relativeSpeeds(label)) {
+                report.append(String.format(" %.2f", s));
+            }
+            report.append('\n');
+        }
+        return report.toString();
+    }
+}
@@ -2,50 +2,93 @@ package scheduling;
 
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-public class TiredExecutor {
+public class TiredExecutor implements TaskExecutor {
 
     private final TiredThread[] workers;
     private final PriorityBlockingQueue<TiredThread> idleMinHeap = new PriorityBlockingQueue<>();
     private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final SchedulingMode mode;
+    private final AtomicLong steals = new AtomicLong(0); // tasks taken from another worker's deque
+    private final AtomicLong dispatched = new AtomicLong(0); // tasks handed to workers since creation
+    private final ThroughputModel throughput; // ADAPTIVE only: learned per-worker speed per operation
+    private volatile boolean shutDown = false;
+    // submitters hold the read lock from the shutdown check until the task is queued, shutdown the write lock
+    private final ReadWriteLock lifecycle = new ReentrantReadWriteLock();
 
     public TiredExecutor(int numThreads) {
+        this(numThreads, SchedulingMode.FATIGUE_HEAP);
+    }
+
+    public TiredExecutor(int numThreads, SchedulingMode mode) {
         // TODO
+        if (mode == SchedulingMode.VIRTUAL_THREADS) {
+            throw new IllegalArgumentException("TiredExecutor: virtual threads are run by VirtualThreadExecutor");
+        }
+        this.mode = mode;
         this.workers = new TiredThread[numThreads];
+        this.throughput = mode == SchedulingMode.ADAPTIVE ? new ThroughputModel(numThreads) : null;
         for (int i = 0; i < numThreads; i++) {
             double fatigueFactor = 0.5 + Math.random();
             workers[i] = new TiredThread(i, fatigueFactor);
-            workers[i].start(); 
-            idleMinHeap.put(workers[i]); 
+            if (usesDeques()) {
+                workers[i].enableWorkStealing(this::steal);
+            }
         }
+        // start only once the array is full: stealing workers scan all of it
+        for (TiredThread w : workers) {
+            w.start();
+            if (mode == SchedulingMode.FATIGUE_HEAP) {
+                idleMinHeap.put(w);
+            }
+        }
+    }
+
+    private boolean usesDeques() {
+        return mode == SchedulingMode.WORK_STEALING || mode == SchedulingMode.ADAPTIVE;
     }
 
     public void submit(Runnable task) {
         // TODO
+        if (usesDeques()) {
+            lifecycle.readLock().lock();
+            try {
+                requireRunning();
+                inFlight.incrementAndGet();
+                TiredThread target = task instanceof CostedTask c && mode == SchedulingMode.ADAPTIVE && c.worker() >= 0
+                        ? workers[c.worker() % workers.length] : leastTired();
+                target.enqueue(wrap(task, null));
+            }
+            finally {
+                lifecycle.readLock().unlock();
+            }
+            return;
+        }
+        requireRunning();
         try {
-            TiredThread worker = idleMinHeap.take(); 
-            inFlight.incrementAndGet();
-            
-            Runnable wrappedTask = new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        task.run(); 
-                    } 
-                    finally {
-                        idleMinHeap.put(worker);
-                        synchronized (this) {
-                            if (inFlight.decrementAndGet() == 0) {
-                                inFlight.notifyAll(); 
-                            } 
-                        }
-                        
-                    }
+            // wait for an idle worker outside the lock, so shutdown never waits behind a blocked submit
+            TiredThread worker = idleMinHeap.take();
+            lifecycle.readLock().lock();
+            try {
+                if (shutDown) {
+                    idleMinHeap.put(worker);
+                    requireRunning();
                 }
-            };
-                worker.newTask(wrappedTask);
+                inFlight.incrementAndGet();
+                worker.newTask(wrap(task, worker));
+            }
+            finally {
+                lifecycle.readLock().unlock();
+            }
         }
         catch(InterruptedException e) {
             throw new RuntimeException("TiredExecutor submit catch" + e);
@@ -54,15 +97,112 @@ public class TiredExecutor {
 
     }
 
+    /**
+     * Wraps a task so that completion is counted; in heap mode the worker also returns to the idle heap.
+     */
+    private Runnable wrap(Runnable task, TiredThread worker) {
+        dispatched.incrementAndGet();
+        return new Runnable() {
+            @Override
+            public void run() {
+                long begin = System.nanoTime();
+                try {
+                    task.run();
+                }
+                finally {
+                    if (throughput != null && task instanceof CostedTask c) {
+                        throughput.record(TaskExecutor.currentWorkerId(), c.label(), c.cost(), System.nanoTime() - begin);
+                    }
+                    if (worker != null) idleMinHeap.put(worker);
+                    // submitAll waits on the executor monitor, so that is the one to notify
+                    synchronized (TiredExecutor.this) {
+                        if (inFlight.decrementAndGet() == 0) {
+                            TiredExecutor.this.notifyAll();
+                        }
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Submits a batch of tasks and returns without waiting for them to finish.
+     * In work-stealing mode this never blocks: tasks are dealt round-robin over the workers,
+     * least tired first. In heap mode each task still waits for an idle worker.
+     * In adaptive mode costed tasks go to their chosen worker, or else to the worker where
+     * they should finish first given its measured speed and what this batch already gave it.
+     */
+    public void submitBatch(Iterable<Runnable> tasks) {
+        if (!usesDeques()) {
+            for (Runnable t : tasks) submit(t);
+            return;
+        }
+        lifecycle.readLock().lock();
+        try {
+            requireRunning();
+            if (mode == SchedulingMode.ADAPTIVE) {
+                dealBySpeed(tasks);
+            }
+            else {
+                TiredThread[] byFatigue = workersByFatigue();
+                int next = 0;
+                for (Runnable t : tasks) {
+                    inFlight.incrementAndGet();
+                    byFatigue[next].enqueue(wrap(t, null));
+                    next = (next + 1) % byFatigue.length;
+                }
+            }
+        }
+        finally {
+            lifecycle.readLock().unlock();
+        }
+        // workers that got nothing from this batch may still steal some of it
+        for (TiredThread w : workers) w.wake();
+    }
+
+    // a stopped worker never runs a queued or handed-off task again, so refuse instead of losing it
+    private void requireRunning() {
+        if (shutDown) throw new IllegalStateException("TiredExecutor: already shut down");
+    }
+
+    /**
+     * In heap mode submit blocks until a worker is idle, so the batch is handed to workers
+     * from a virtual thread instead of the caller's; it stops early once the future is done.
+     */
+    @Override
+    public CompletableFuture<Void> submitAsync(Iterable<Runnable> tasks) {
+        if (usesDeques()) return TaskExecutor.super.submitAsync(tasks);
+        requireRunning();
+        AsyncBatch batch = new AsyncBatch(tasks);
+        CompletableFuture<Void> future = batch.future();
+        Thread.ofVirtual().name("lae-dispatch").start(() -> {
+            try {
+                for (Runnable t : batch.tasks()) {
+                    if (future.isDone()) return;
+                    submit(t);
+                }
+            }
+            catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
     public void submitAll(Iterable<Runnable> tasks) {
-        // TODO: submit tasks one by one and wait until all finish
-        for (Runnable t : tasks) submit(t);
+        submitBatch(tasks);
+        awaitAll();
+    }
 
+    /**
+     * Blocks until every submitted task has finished.
+     */
+    public void awaitAll() {
         synchronized (this) {
             while (inFlight.get() > 0) {
                 try {
-                    wait(); 
-                } 
+                    wait();
+                }
                 catch (InterruptedException e) {
                     throw new RuntimeException("TiredExecutor submitAll catch" + e);
                 }
@@ -70,24 +210,130 @@ public class TiredExecutor {
         }
     }
 
+    private void dealBySpeed(Iterable<Runnable> tasks) {
+        double[] assigned = new double[workers.length]; // cost units dealt to each worker in this batch
+        Map<String, double[]> speeds = new HashMap<>();
+        int next = 0;
+        for (Runnable t : tasks) {
+            int target;
+            if (t instanceof CostedTask c && c.worker() >= 0) {
+                target = c.worker() % workers.length;
+            }
+            else if (t instanceof CostedTask c) {
+                double[] speed = speeds.computeIfAbsent(c.label(), throughput::relativeSpeeds);
+                target = 0;
+                for (int w = 1; w < workers.length; w++) {
+                    if ((assigned[w] + c.cost()) / speed[w] < (assigned[target] + c.cost()) / speed[target]) target = w;
+                }
+                assigned[target] += c.cost();
+            }
+            else {
+                target = next;
+                next = (next + 1) % workers.length;
+            }
+            inFlight.incrementAndGet();
+            workers[target].enqueue(wrap(t, null));
+        }
+    }
+
+    // Fatigue keeps changing while workers run, so sort on a snapshot rather than with compareTo.
+    private TiredThread[] workersByFatigue() {
+        double[] fatigue = new double[workers.length];
+        Integer[] order = new Integer[workers.length];
+        for (int i = 0; i < workers.length; i++) {
+            fatigue[i] = workers[i].getFatigue();
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(fatigue[a], fatigue[b]));
+        TiredThread[] sorted = new TiredThread[workers.length];
+        for (int i = 0; i < workers.length; i++) {
+            sorted[i] = workers[order[i]];
+        }
+        return sorted;
+    }
+
+    // in adaptive mode "least tired" is the shortest queue: fatigue factors are not measured
+    private TiredThread leastTired() {
+        TiredThread best = workers[0];
+        for (TiredThread w : workers) {
+            boolean better = mode == SchedulingMode.ADAPTIVE ? w.queuedTasks() < best.queuedTasks() : w.compareTo(best) < 0;
+            if (better) best = w;
+        }
+        return best;
+    }
+
+    /**
+     * Called by an idle worker in work-stealing mode. The victim is the most tired
+     * worker that still has queued tasks, so tired workers shed load first.
+     * In adaptive mode it is the worker with the longest queue, which would finish last.
+     */
+    private Runnable steal(TiredThread thief) {
+        TiredThread victim = null;
+        for (TiredThread w : workers) {
+            if (w == thief || !w.hasQueuedTasks()) continue;
+            boolean worse = victim == null || (mode == SchedulingMode.ADAPTIVE
+                    ? w.queuedTasks() > victim.queuedTasks() : w.compareTo(victim) > 0);
+            if (worse) victim = w;
+        }
+        if (victim == null) return null;
+        Runnable task = victim.stealTask();
+        if (task != null) steals.incrementAndGet();
+        return task;
+    }
+
+    /**
+     * Stops the workers. Tasks already queued in work-stealing mode still run before the workers exit;
+     * later submissions throw IllegalStateException. Calling it again does nothing.
+     */
     public void shutdown() throws InterruptedException {
         // TODO
+        lifecycle.writeLock().lock();
+        try {
+            if (shutDown) return;
+            shutDown = true;
+        }
+        finally {
+            lifecycle.writeLock().unlock();
+        }
         for (TiredThread w : workers) w.shutdown();
         //for (TiredThread w : workers) w.join();
     }
 
     public synchronized String getWorkerReport() {
         // TODO: return readable statistics for each worker
-        synchronized (inFlight) { 
+        synchronized (inFlight) {
             StringBuilder report = new StringBuilder("--- Worker Stats ---\n");
             for (TiredThread w : workers) {
                 report.append(String.format("ID: %d | Fatigue: %.2f | Used: %d ns | Idle: %d ns\n",
                         w.getWorkerId(), w.getFatigue(), w.getTimeUsed(), w.getTimeIdle()));
             }
+            report.append(String.format("Mode: %s | Dispatched: %d | Steals: %d\n", mode, dispatched.get(), steals.get()));
+            if (throughput != null) report.append(throughput.getReport());
             return report.toString();
         }
     }
 
+    @Override
+    public ThroughputModel getThroughputModel() {
+        return throughput;
+    }
+
+    @Override
+    public int getParallelism() {
+        return workers.length;
+    }
+
+    @Override
+    public long[] getWorkerThreadIds() {
+        long[] ids = new long[workers.length];
+        for (int i = 0; i < workers.length; i++) {
+            ids[i] = workers[i].threadId();
+        }
+        return ids;
+    }
+
     public TiredThread[] getWorkers() {return workers; }
     public int getInFlights() {return inFlight.get(); }
+    public long getDispatched() {return dispatched.get(); }
+    public SchedulingMode getMode() {return mode; }
 }
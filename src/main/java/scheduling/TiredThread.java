@@ -1,9 +1,13 @@
 package scheduling;
 
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
 
 public class TiredThread extends Thread implements Comparable<TiredThread> {
 
@@ -17,6 +21,14 @@ public class TiredThread extends Thread implements Comparable<TiredThread> {
     // Single-slot handoff queue; executor will put tasks here
     private final BlockingQueue<Runnable> handoff = new ArrayBlockingQueue<>(1);
 
+    // Work-stealing mode: own task deque, and a callback that steals from other workers.
+    // An idle worker parks until a task is queued (see wake); the timed retry only covers a missed
+    // steal, and backs off exponentially so an idle pool costs next to nothing.
+    private static final long STEAL_BACKOFF_MICROS = 200;
+    private static final long MAX_STEAL_BACKOFF_MICROS = 50_000;
+    private final BlockingDeque<Runnable> deque = new LinkedBlockingDeque<>();
+    private volatile Function<TiredThread, Runnable> stealer = null;
+
     private final AtomicBoolean busy = new AtomicBoolean(false); // Indicates if the worker is currently executing a task
 
     private final AtomicLong timeUsed = new AtomicLong(0); // Total time spent executing tasks
@@ -63,51 +75,133 @@ public class TiredThread extends Thread implements Comparable<TiredThread> {
         }
     }
 
+    /**
+     * Switches this worker to work-stealing mode. Must be called before the thread is started.
+     * The stealer is asked for a task whenever this worker's own deque is empty.
+     */
+    void enableWorkStealing(Function<TiredThread, Runnable> stealer) {
+        this.stealer = stealer;
+    }
+
+    /**
+     * Queue a task on this worker's deque (work-stealing mode). Never blocks.
+     */
+    void enqueue(Runnable task) {
+        deque.offerLast(task);
+        wake();
+    }
+
+    /**
+     * Wakes this worker if it is parked idle (work-stealing mode), so it looks for work to steal at once.
+     */
+    void wake() {
+        LockSupport.unpark(this);
+    }
+
+    /**
+     * Take a task from the back of this worker's deque, or null if there is none.
+     * Thieves take from the opposite end to the owner, which works from the front.
+     */
+    Runnable stealTask() {
+        return deque.pollLast();
+    }
+
+    boolean hasQueuedTasks() {
+        return !deque.isEmpty();
+    }
+
+    int queuedTasks() {
+        return deque.size();
+    }
+
     /**
      * Request this worker to stop after finishing current task.
-     * Inserts a poison pill so the worker wakes up and exits.
+     * Inserts a poison pill so the worker wakes up and exits
+     * (a work-stealing worker first runs what is left in its deque and whatever it can still steal).
+     * Safe to call more than once.
      */
     public void shutdown() {
        // TODO
-       try {
-        alive.set(false);
-        handoff.put(POISON_PILL);
-       }
-       catch (InterruptedException e) {
-        throw new RuntimeException("TiredThread shutdown catch" + e);
+       alive.set(false);
+       if (stealer != null) {
+           wake();
+           return;
        }
+       // a full slot holds a task the worker is about to take, and it checks alive right after running it
+       handoff.offer(POISON_PILL);
     }
 
     @Override
     public void run() {
        // TODO
+       if (stealer != null) {
+           runStealing();
+           return;
+       }
        Runnable task = null;
        while (alive.get() && task != POISON_PILL) {
             try {
                 idleStartTime.set(System.nanoTime());
-                task = handoff.take(); 
+                task = handoff.take();
                 if (task != POISON_PILL) {
-                    timeIdle.addAndGet(System.nanoTime() - this.idleStartTime.get());
-
-                    busy.set(true);
-                    long startTime = System.nanoTime();
-                    
-                    task.run(); 
-
-                    long endTime = System.nanoTime();
-                    timeUsed.addAndGet(endTime - startTime); 
-                    
-                    busy.set(false);
-                    
-                    idleStartTime.set(System.nanoTime());
+                    runTimed(task);
                 }
-            } 
+            }
             catch (InterruptedException e) {
                 break;
                 //alive.set(false);
                 //Thread.currentThread().interrupt();
-                //task = POISON_PILL; 
+                //task = POISON_PILL;
+            }
+        }
+        // the executor may hand this worker a task just before shutdown, after its last look at alive
+        Runnable last;
+        while (!isInterrupted() && (last = handoff.poll()) != null && last != POISON_PILL) {
+            runTimed(last);
+        }
+    }
+
+    // Drains on shutdown: queued tasks belong to batches someone is waiting on, so they still run.
+    // The executor queues nothing once alive is cleared, so one pass that finds no task after
+    // seeing that is enough to exit.
+    private void runStealing() {
+        idleStartTime.set(System.nanoTime());
+        long backoffMicros = STEAL_BACKOFF_MICROS;
+        boolean draining = false;
+        while (true) {
+            Runnable task = deque.pollFirst();
+            if (task == null) task = stealer.apply(this);
+            if (task != null) {
+                runTimed(task);
+                backoffMicros = STEAL_BACKOFF_MICROS;
+                continue;
+            }
+            if (draining || isInterrupted()) break;
+            if (!alive.get()) {
+                draining = true;
+                continue;
             }
+            // a task queued after the checks above leaves a permit, so this returns at once
+            LockSupport.parkNanos(this, backoffMicros * 1000);
+            backoffMicros = Math.min(backoffMicros * 2, MAX_STEAL_BACKOFF_MICROS);
+        }
+    }
+
+    private void runTimed(Runnable task) {
+        timeIdle.addAndGet(System.nanoTime() - this.idleStartTime.get());
+
+        busy.set(true);
+        long startTime = System.nanoTime();
+        try {
+            task.run();
+        }
+        finally {
+            long endTime = System.nanoTime();
+            timeUsed.addAndGet(endTime - startTime);
+
+            busy.set(false);
+
+            idleStartTime.set(System.nanoTime());
         }
     }
 
@@ -0,0 +1,186 @@
+package scheduling;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs every task on its own virtual thread, so submit never waits for an idle worker and
+ * many small trees can be in flight at once. A fair semaphore lets at most `permits` tasks
+ * compute at a time (by default one per carrier thread); the rest park cheaply in FIFO order.
+ * <p>
+ * A running task holds one of `permits` slots, the least tired idle one. Slots keep the same
+ * accounting as a TiredThread (time used, time idle, fatigue), so the worker report and the
+ * per-worker metrics read the same as with platform workers.
+ */
+public class VirtualThreadExecutor implements TaskExecutor {
+
+    private static final ThreadLocal<Slot> CURRENT = new ThreadLocal<>();
+
+    private final Slot[] slots;
+    private final PriorityBlockingQueue<Slot> idleSlots = new PriorityBlockingQueue<>();
+    private final Semaphore permits;
+    private final ThreadFactory threads = Thread.ofVirtual().name("lae-virtual-", 0).factory();
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final AtomicLong dispatched = new AtomicLong(0);
+    private final AtomicLong waited = new AtomicLong(0); // tasks that found every permit taken
+    private volatile boolean shutdown = false;
+
+    /**
+     * One unit of concurrency, timed like a TiredThread; only ever used by one task at a time.
+     */
+    private static final class Slot implements Comparable<Slot> {
+        final int id;
+        final double fatigueFactor;
+        final AtomicLong timeUsed = new AtomicLong(0);
+        final AtomicLong timeIdle = new AtomicLong(0);
+        volatile long idleStartTime = System.nanoTime();
+
+        Slot(int id, double fatigueFactor) {
+            this.id = id;
+            this.fatigueFactor = fatigueFactor;
+        }
+
+        double getFatigue() {
+            return fatigueFactor * timeUsed.get();
+        }
+
+        void runTimed(Runnable task) {
+            long startTime = System.nanoTime();
+            timeIdle.addAndGet(startTime - idleStartTime);
+            try {
+                task.run();
+            }
+            finally {
+                long endTime = System.nanoTime();
+                timeUsed.addAndGet(endTime - startTime);
+                idleStartTime = endTime;
+            }
+        }
+
+        @Override
+        public int compareTo(Slot o) {
+            return Double.compare(getFatigue(), o.getFatigue());
+        }
+    }
+
+    public VirtualThreadExecutor() {
+        this(carrierThreads());
+    }
+
+    public VirtualThreadExecutor(int permits) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("VirtualThreadExecutor: number of permits must be positive");
+        }
+        this.permits = new Semaphore(permits, true);
+        this.slots = new Slot[permits];
+        for (int i = 0; i < permits; i++) {
+            slots[i] = new Slot(i, 0.5 + Math.random());
+            idleSlots.put(slots[i]);
+        }
+    }
+
+    /**
+     * Platform threads the default virtual-thread scheduler mounts virtual threads on.
+     */
+    public static int carrierThreads() {
+        return Integer.getInteger("jdk.virtualThreadScheduler.parallelism", Runtime.getRuntime().availableProcessors());
+    }
+
+    static int currentSlotId() {
+        Slot slot = CURRENT.get();
+        return slot == null ? -1 : slot.id;
+    }
+
+    @Override
+    public void submit(Runnable task) {
+        if (shutdown) {
+            throw new IllegalStateException("VirtualThreadExecutor: submit after shutdown");
+        }
+        inFlight.incrementAndGet();
+        dispatched.incrementAndGet();
+        threads.newThread(() -> runOne(task)).start();
+    }
+
+    private void runOne(Runnable task) {
+        if (!permits.tryAcquire()) {
+            waited.incrementAndGet();
+            permits.acquireUninterruptibly();
+        }
+        Slot slot = idleSlots.poll(); // never null: a permit guarantees an idle slot
+        CURRENT.set(slot);
+        try {
+            slot.runTimed(task);
+        }
+        finally {
+            CURRENT.remove();
+            idleSlots.put(slot);
+            permits.release();
+            synchronized (this) {
+                if (inFlight.decrementAndGet() == 0) {
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void submitBatch(Iterable<Runnable> tasks) {
+        for (Runnable t : tasks) submit(t);
+    }
+
+    @Override
+    public void submitAll(Iterable<Runnable> tasks) {
+        submitBatch(tasks);
+        awaitAll();
+    }
+
+    @Override
+    public void awaitAll() {
+        synchronized (this) {
+            while (inFlight.get() > 0) {
+                try {
+                    wait();
+                }
+                catch (InterruptedException e) {
+                    throw new RuntimeException("VirtualThreadExecutor awaitAll interrupted", e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public int getParallelism() {
+        return slots.length;
+    }
+
+    @Override
+    public long[] getWorkerThreadIds() {
+        return new long[0]; // virtual threads come and go, and run on the scheduler's carriers
+    }
+
+    /**
+     * Stops accepting tasks; tasks already submitted still run to completion.
+     */
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public String getWorkerReport() {
+        StringBuilder report = new StringBuilder("--- Worker Stats ---\n");
+        for (Slot s : slots) {
+            report.append(String.format("ID: %d | Fatigue: %.2f | Used: %d ns | Idle: %d ns\n",
+                    s.id, s.getFatigue(), s.timeUsed.get(), s.timeIdle.get()));
+        }
+        report.append(String.format("Mode: %s | Dispatched: %d | Waited for a permit: %d | Permits: %d | Carriers: %d\n",
+                SchedulingMode.VIRTUAL_THREADS, dispatched.get(), waited.get(), slots.length, carrierThreads()));
+        return report.toString();
+    }
+
+    public int getInFlights() {return inFlight.get(); }
+    public long getDispatched() {return dispatched.get(); }
+}
@@ -0,0 +1,257 @@
+package spl.lae;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import parser.ComputationNode;
+import parser.InputParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Long-lived mode: one warm engine serves many jobs, several at a time.
+ * A job is an input expression file and an output path; jobs arrive from a watched
+ * directory, from JSON lines on stdin, or over a Unix domain socket.
+ * <p>
+ * Line protocol (stdin and socket): each request line is {"input": "...", "output": "..."[, "timeoutMs": n]};
+ * each finished job answers with one line {"input", "output", "ok", "millis"[, "error"]},
+ * in completion order.
+ * <p>
+ * Each job is a pipeline: it is parsed on a parser thread, computed with engine.runAsync and
+ * written on a writer thread, so the next jobs parse and finished ones write while others
+ * compute. At most concurrentJobs parsed trees are in the engine or being written at a time.
+ */
+class BatchServer {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final LinearAlgebraEngine engine;
+    private final ExecutorService parsers;
+    private final ExecutorService writers;
+    private final Semaphore admitted; // parsed trees not yet written
+    private final Set<CompletableFuture<ObjectNode>> pending = ConcurrentHashMap.newKeySet();
+    private final JobStats stats = new JobStats();
+
+    BatchServer(LinearAlgebraEngine engine, int concurrentJobs) {
+        this.engine = engine;
+        // stage threads only parse and write; the computation itself runs on the engine's workers
+        this.parsers = Executors.newFixedThreadPool(concurrentJobs, daemon("lae-parse"));
+        this.writers = Executors.newFixedThreadPool(concurrentJobs, daemon("lae-write"));
+        this.admitted = new Semaphore(concurrentJobs);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    CompletableFuture<ObjectNode> submit(String input, String output) {
+        return submit(input, output, 0);
+    }
+
+    /**
+     * Starts the job's pipeline and returns its reply future. With timeoutMillis > 0 the
+     * computation is cancelled once it has run that long, and the job fails.
+     */
+    CompletableFuture<ObjectNode> submit(String input, String output, long timeoutMillis) {
+        long start = System.nanoTime();
+        AtomicBoolean holdsPermit = new AtomicBoolean(false);
+        CompletableFuture<ObjectNode> job = CompletableFuture
+                .supplyAsync(() -> parse(input, holdsPermit), parsers)
+                .thenCompose(root -> timeoutMillis > 0
+                        ? engine.runAsync(root).orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                        : engine.runAsync(root))
+                .thenAcceptAsync(result -> write(result, output), writers)
+                .handleAsync((done, error) -> finish(input, output, start, timeoutMillis, error, holdsPermit), writers);
+        pending.add(job);
+        job.whenComplete((reply, error) -> pending.remove(job));
+        return job;
+    }
+
+    // waits for a permit after parsing, so parsing runs ahead of the engine by at most one tree per parser
+    private ComputationNode parse(String input, AtomicBoolean holdsPermit) {
+        ComputationNode root;
+        try {
+            root = Main.parse(engine, input);
+        }
+        catch (ParseException e) {
+            throw new CompletionException(e);
+        }
+        admitted.acquireUninterruptibly();
+        holdsPermit.set(true);
+        return root;
+    }
+
+    private static void write(ComputationNode result, String output) {
+        try {
+            Main.writeResult(result, output);
+        }
+        catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private ObjectNode finish(String input, String output, long start, long timeoutMillis, Throwable error,
+                              AtomicBoolean holdsPermit) {
+        if (holdsPermit.getAndSet(false)) admitted.release();
+        String message = null;
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            message = Main.writeError(cause instanceof TimeoutException
+                    ? "Timed out after " + timeoutMillis + " ms" : Main.message(cause), output);
+        }
+        long end = System.nanoTime();
+        stats.record(start, end, message == null);
+        ObjectNode reply = mapper.createObjectNode().put("input", input).put("output", output);
+        reply.put("ok", message == null).put("millis", (end - start) / 1e6);
+        if (message != null) reply.put("error", message);
+        return reply;
+    }
+
+    /**
+     * Answers request lines until in reaches end of input, then waits for the jobs it started.
+     */
+    void serveLines(BufferedReader in, Writer out) throws IOException {
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.isBlank()) continue;
+            CompletableFuture<ObjectNode> job;
+            try {
+                JsonNode request = mapper.readTree(line);
+                job = submit(request.path("input").asText(), request.path("output").asText(),
+                        request.path("timeoutMs").asLong(0));
+            }
+            catch (IOException e) {
+                job = CompletableFuture.completedFuture(
+                        mapper.createObjectNode().put("ok", false).put("error", "Bad request: " + e.getMessage()));
+            }
+            pending.add(job.thenAccept(reply -> reply(out, reply)));
+            pending.removeIf(CompletableFuture::isDone);
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+    private static void reply(Writer out, ObjectNode reply) {
+        synchronized (out) {
+            try {
+                out.write(reply.toString());
+                out.write('\n');
+                out.flush();
+            }
+            catch (IOException e) {
+                // the client went away; the job itself is done
+            }
+        }
+    }
+
+    /**
+     * Accepts connections on a Unix domain socket; each connection speaks the line protocol.
+     */
+    void serveSocket(Path socketPath) throws IOException {
+        Files.deleteIfExists(socketPath);
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            while (true) {
+                SocketChannel client = server.accept();
+                Thread connection = new Thread(() -> {
+                    try (client;
+                         BufferedReader in = new BufferedReader(Channels.newReader(client, StandardCharsets.UTF_8));
+                         Writer out = Channels.newWriter(client, StandardCharsets.UTF_8)) {
+                        serveLines(in, out);
+                    }
+                    catch (IOException ignored) {
+                        // connection dropped
+                    }
+                }, "lae-connection");
+                connection.setDaemon(true);
+                connection.start();
+            }
+        }
+        finally {
+            Files.deleteIfExists(socketPath);
+        }
+    }
+
+    /**
+     * Runs every *.json in inputDir, then each one created or moved in later, writing
+     * a result of the same name into outputDir. Files should be moved into the directory
+     * complete (write elsewhere, then rename), or a half-written file may be picked up.
+     */
+    void watch(Path inputDir, Path outputDir) throws IOException, InterruptedException {
+        if (inputDir.toAbsolutePath().normalize().equals(outputDir.toAbsolutePath().normalize())) {
+            throw new IllegalArgumentException("Batch: output directory must differ from the watched directory");
+        }
+        Files.createDirectories(outputDir);
+        try (WatchService watcher = inputDir.getFileSystem().newWatchService()) {
+            inputDir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE);
+            try (DirectoryStream<Path> existing = Files.newDirectoryStream(inputDir, "*.json")) {
+                for (Path file : existing) submitFile(file, outputDir);
+            }
+            while (true) {
+                WatchKey key = watcher.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) continue;
+                    Path file = inputDir.resolve((Path) event.context());
+                    if (file.getFileName().toString().endsWith(".json")) submitFile(file, outputDir);
+                }
+                if (!key.reset()) return; // the directory is gone
+            }
+        }
+    }
+
+    private void submitFile(Path file, Path outputDir) {
+        submit(file.toString(), outputDir.resolve(file.getFileName()).toString());
+    }
+
+    String getReport() {
+        return stats.getReport();
+    }
+
+    /**
+     * Waits (up to a minute) for the jobs already submitted, then stops the stage threads.
+     */
+    void shutdown() throws InterruptedException {
+        try {
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).get(1, TimeUnit.MINUTES);
+        }
+        catch (ExecutionException | TimeoutException e) {
+            // failed jobs have already answered; stragglers are abandoned
+        }
+        parsers.shutdown();
+        writers.shutdown();
+    }
+}
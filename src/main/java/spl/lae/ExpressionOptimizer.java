@@ -0,0 +1,254 @@
+package spl.lae;
+
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites a computation tree before execution:
+ * cancels T(T(X)) and -(-X), folds NEGATE into a MULTIPLY or ADD as a sign flag,
+ * and re-parenthesizes multiply chains by matrix-chain dynamic programming.
+ * A tree whose dimensions do not check out is left as it is, so the engine reports the error.
+ */
+public class ExpressionOptimizer {
+
+    private final Map<ComputationNode, int[]> shapes = new IdentityHashMap<>();
+    private long flopsBefore = 0;
+    private long flopsAfter = 0;
+
+    /**
+     * Returns the optimized root, which may be a different node than the one passed in.
+     */
+    public ComputationNode optimize(ComputationNode root) {
+        shapes.clear();
+        try {
+            flopsBefore = estimateFlops(root);
+        }
+        catch (IllegalArgumentException e) {
+            flopsBefore = flopsAfter = 0;
+            return root;
+        }
+        ComputationNode optimized = rewrite(root);
+        flopsAfter = estimateFlops(optimized);
+        return optimized;
+    }
+
+    public long getFlopsBefore() {
+        return flopsBefore;
+    }
+
+    public long getFlopsAfter() {
+        return flopsAfter;
+    }
+
+    private ComputationNode rewrite(ComputationNode node) {
+        if (node.getNodeType() == ComputationNodeType.MATRIX) return node;
+
+        List<ComputationNode> children = new ArrayList<>();
+        for (ComputationNode child : node.getChildren()) {
+            children.add(rewrite(child));
+        }
+
+        switch (node.getNodeType()) {
+            case TRANSPOSE: {
+                ComputationNode child = children.get(0);
+                if (child.getNodeType() == ComputationNodeType.TRANSPOSE) {
+                    return child.getChildren().get(0); // T(T(X)) = X
+                }
+                return copy(node, children);
+            }
+            case NEGATE: {
+                ComputationNode child = children.get(0);
+                if (child.getNodeType() == ComputationNodeType.NEGATE) {
+                    return child.getChildren().get(0); // -(-X) = X
+                }
+                if (child.getNodeType() == ComputationNodeType.MULTIPLY || child.getNodeType() == ComputationNodeType.ADD) {
+                    child.setNegated(!child.isNegated());
+                    return child;
+                }
+                return copy(node, children);
+            }
+            case MULTIPLY: {
+                // flatten nested products into one chain; NEGATE operands become the chain's sign
+                List<ComputationNode> chain = new ArrayList<>();
+                boolean negated = flattenChain(children, node.isNegated(), chain);
+                ComputationNode product = chain.size() > 2 ? orderChain(chain) : copy(node, chain);
+                product.setNegated(negated);
+                return product;
+            }
+            case ADD: {
+                boolean allNegated = true;
+                for (ComputationNode child : children) {
+                    allNegated &= child.getNodeType() == ComputationNodeType.NEGATE;
+                }
+                ComputationNode sum = copy(node, children);
+                if (allNegated) {
+                    // (-A) + (-B) = -(A + B)
+                    List<ComputationNode> inner = new ArrayList<>();
+                    for (ComputationNode child : children) {
+                        inner.add(child.getChildren().get(0));
+                    }
+                    sum = copy(node, inner);
+                    sum.setNegated(!node.isNegated());
+                }
+                return sum;
+            }
+            default:
+                return copy(node, children);
+        }
+    }
+
+    private boolean flattenChain(List<ComputationNode> operands, boolean negated, List<ComputationNode> chain) {
+        for (ComputationNode operand : operands) {
+            if (operand.getNodeType() == ComputationNodeType.NEGATE) {
+                negated = !negated;
+                operand = operand.getChildren().get(0);
+            }
+            if (operand.getNodeType() == ComputationNodeType.MULTIPLY) {
+                negated = flattenChain(operand.getChildren(), negated ^ operand.isNegated(), chain);
+            }
+            else {
+                chain.add(operand);
+            }
+        }
+        return negated;
+    }
+
+    /**
+     * Classic matrix-chain DP over the operand dimensions; rebuilds the cheapest binary tree.
+     */
+    private ComputationNode orderChain(List<ComputationNode> chain) {
+        int n = chain.size();
+        long[] dims = new long[n + 1];
+        for (int i = 0; i < n; i++) {
+            int[] shape = shape(chain.get(i));
+            dims[i] = shape[0];
+            dims[i + 1] = shape[1];
+        }
+        long[][] cost = new long[n][n];
+        int[][] split = new int[n][n];
+        for (int len = 2; len <= n; len++) {
+            for (int i = 0; i + len - 1 < n; i++) {
+                int j = i + len - 1;
+                cost[i][j] = Long.MAX_VALUE;
+                for (int k = i; k < j; k++) {
+                    long c = cost[i][k] + cost[k + 1][j] + dims[i] * dims[k + 1] * dims[j + 1];
+                    if (c < cost[i][j]) {
+                        cost[i][j] = c;
+                        split[i][j] = k;
+                    }
+                }
+            }
+        }
+        return build(chain, split, 0, n - 1);
+    }
+
+    private ComputationNode build(List<ComputationNode> chain, int[][] split, int i, int j) {
+        if (i == j) return chain.get(i);
+        int k = split[i][j];
+        List<ComputationNode> operands = new ArrayList<>();
+        operands.add(build(chain, split, i, k));
+        operands.add(build(chain, split, k + 1, j));
+        return new ComputationNode(ComputationNodeType.MULTIPLY, operands);
+    }
+
+    private static ComputationNode copy(ComputationNode node, List<ComputationNode> children) {
+        ComputationNode copy = new ComputationNode(node.getNodeType(), children);
+        copy.setNegated(node.isNegated());
+        return copy;
+    }
+
+    private int[] shape(ComputationNode node) {
+        int[] known = shapes.get(node);
+        if (known != null) return known;
+        int[] shape;
+        List<ComputationNode> children = node.getChildren();
+        switch (node.getNodeType()) {
+            case MATRIX:
+                shape = node.getMatrixShape();
+                break;
+            case TRANSPOSE: {
+                int[] s = shape(only(children));
+                shape = new int[] {s[1], s[0]};
+                break;
+            }
+            case NEGATE:
+                shape = shape(only(children));
+                break;
+            case ADD: {
+                shape = shape(children.get(0));
+                for (ComputationNode child : children) {
+                    int[] s = shape(child);
+                    if (s[0] != shape[0] || s[1] != shape[1]) {
+                        throw new IllegalArgumentException("Add: dimensions mismatch");
+                    }
+                }
+                break;
+            }
+            case MULTIPLY: {
+                int[] s = shape(children.get(0));
+                for (int i = 1; i < children.size(); i++) {
+                    int[] next = shape(children.get(i));
+                    if (s[1] != next[0]) {
+                        throw new IllegalArgumentException("Multiply: dimensions mismatch");
+                    }
+                    s = new int[] {s[0], next[1]};
+                }
+                shape = s;
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown node type " + node.getNodeType());
+        }
+        shapes.put(node, shape);
+        return shape;
+    }
+
+    private static ComputationNode only(List<ComputationNode> children) {
+        if (children == null || children.size() != 1) {
+            throw new IllegalArgumentException("Unary operation: expected 1 operand");
+        }
+        return children.get(0);
+    }
+
+    /**
+     * Floating-point operations the engine would spend on this tree, as written.
+     * A sign folded into a multiply is free; one folded into an add costs a pass.
+     */
+    private long estimateFlops(ComputationNode node) {
+        if (node.getNodeType() == ComputationNodeType.MATRIX) return 0;
+        List<ComputationNode> children = node.getChildren();
+        if (children == null || children.isEmpty() || (node.getNodeType() != ComputationNodeType.ADD
+                && node.getNodeType() != ComputationNodeType.MULTIPLY && children.size() != 1)) {
+            throw new IllegalArgumentException("Malformed operation node");
+        }
+        long flops = 0;
+        for (ComputationNode child : children) {
+            flops += estimateFlops(child);
+        }
+        int[] out = shape(node);
+        long elements = (long) out[0] * out[1];
+        switch (node.getNodeType()) {
+            case MULTIPLY: {
+                // left-associative, as the engine nests it
+                int[] s = shape(children.get(0));
+                for (int i = 1; i < children.size(); i++) {
+                    int[] next = shape(children.get(i));
+                    flops += 2L * s[0] * s[1] * next[1];
+                    s = new int[] {s[0], next[1]};
+                }
+                break;
+            }
+            case ADD:
+                flops += elements * (children.size() - 1) + (node.isNegated() ? elements : 0);
+                break;
+            default:
+                flops += elements;
+        }
+        return flops;
+    }
+}
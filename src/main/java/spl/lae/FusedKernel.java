@@ -0,0 +1,176 @@
+package spl.lae;
+
+import memory.BufferPool;
+import memory.SharedMatrix;
+import memory.VectorKernels;
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A chain of ADD / NEGATE / TRANSPOSE nodes evaluated as one element-wise kernel.
+ * Any such chain is a signed sum of its operands, each read either as is or transposed:
+ * out[i][j] = sum over k of sign_k * (transposed_k ? in_k[j][i] : in_k[i][j]).
+ * Each input is read once and the output is written once, instead of one pass per node.
+ */
+class FusedKernel {
+
+    private static final int TRANSPOSE_BLOCK = 32; // rows gathered together from a transposed input
+    private static final int STREAM_ROWS = 32; // rows read together from engine storage
+
+    private final List<ComputationNode> operands = new ArrayList<>(); // nodes that are not element-wise
+    private final List<Double> signs = new ArrayList<>();
+    private final List<Boolean> transposed = new ArrayList<>();
+    private int operations = 0;
+
+    private double[][][] inputs; // null where the term is streamed from engine storage instead
+    private SharedMatrix[] streams;
+    private double[] result; // flat row-major
+    private int numRows;
+    private int numCols;
+
+    private FusedKernel() {}
+
+    static boolean isElementWise(ComputationNode node) {
+        ComputationNodeType type = node.getNodeType();
+        return type == ComputationNodeType.ADD || type == ComputationNodeType.NEGATE || type == ComputationNodeType.TRANSPOSE;
+    }
+
+    /**
+     * Compiles the element-wise region rooted at root, or returns null if there is
+     * nothing to fuse (fewer than two element-wise operations, or a malformed node).
+     */
+    static FusedKernel compile(ComputationNode root) {
+        if (!isElementWise(root)) return null;
+        FusedKernel kernel = new FusedKernel();
+        if (!kernel.collect(root, 1.0, false) || kernel.operations < 2) return null;
+        return kernel;
+    }
+
+    private boolean collect(ComputationNode node, double sign, boolean transpose) {
+        List<ComputationNode> children = node.getChildren();
+        switch (node.getNodeType()) {
+            case ADD:
+                if (children == null || children.size() < 2) return false;
+                operations++;
+                for (ComputationNode child : children) {
+                    if (!collect(child, node.isNegated() ? -sign : sign, transpose)) return false;
+                }
+                return true;
+            case NEGATE:
+                if (children == null || children.size() != 1) return false;
+                operations++;
+                return collect(children.get(0), -sign, transpose);
+            case TRANSPOSE:
+                if (children == null || children.size() != 1) return false;
+                operations++;
+                return collect(children.get(0), sign, !transpose);
+            default:
+                operands.add(node);
+                signs.add(sign);
+                transposed.add(transpose);
+                return true;
+        }
+    }
+
+    /**
+     * The nodes whose results this kernel reads; they must all be resolved before prepare().
+     */
+    List<ComputationNode> getOperands() {
+        return operands;
+    }
+
+    /**
+     * Reads the resolved operands, checks that their shapes agree and takes the output from pool.
+     */
+    void prepare(BufferPool pool) {
+        inputs = new double[operands.size()][][];
+        streams = new SharedMatrix[inputs.length];
+        for (int k = 0; k < inputs.length; k++) {
+            ComputationNode operand = operands.get(k);
+            int[] shape = operand.getMatrixShape();
+            int rows = transposed.get(k) ? shape[1] : shape[0];
+            int cols = transposed.get(k) ? shape[0] : shape[1];
+            if (k == 0) {
+                numRows = rows;
+                numCols = cols;
+            }
+            else if (rows != numRows || cols != numCols) {
+                throw new IllegalArgumentException("Add: dimensions mismatch");
+            }
+            // a term in engine storage is streamed a block of rows at a time instead of copied out whole;
+            // a transposed one through a view, so the transpose is never materialized
+            if (!operand.hasSharedMatrix()) inputs[k] = operand.getMatrix();
+            else if (transposed.get(k)) streams[k] = operand.getSharedMatrix().transposedView();
+            else streams[k] = operand.getSharedMatrix();
+        }
+        if ((long) numRows * numCols > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Add: result too large for flat storage");
+        }
+        result = pool.take(numRows * numCols); // every element is overwritten by the first term
+    }
+
+    int numRows() {
+        return numRows;
+    }
+
+    int numCols() {
+        return numCols;
+    }
+
+    int numTerms() {
+        return inputs.length;
+    }
+
+    /**
+     * Computes output rows [from, to). Ranges never overlap, so they may run concurrently.
+     */
+    void computeRows(int from, int to) {
+        VectorKernels kernels = VectorKernels.get();
+        double[] rows = null;
+        for (int k = 0; k < inputs.length; k++) {
+            double s = signs.get(k);
+            double[][] in = inputs[k];
+            boolean first = k == 0;
+            if (in == null) {
+                if (rows == null) rows = new double[Math.min(STREAM_ROWS, to - from) * numCols];
+                for (int i0 = from; i0 < to; i0 += STREAM_ROWS) {
+                    int i1 = Math.min(i0 + STREAM_ROWS, to);
+                    streams[k].readRows(i0, i1, rows);
+                    for (int i = i0; i < i1; i++) {
+                        if (first) kernels.scale(s, rows, (i - i0) * numCols, result, i * numCols, numCols);
+                        else kernels.axpy(s, rows, (i - i0) * numCols, result, i * numCols, numCols);
+                    }
+                }
+            }
+            else if (!transposed.get(k)) {
+                for (int i = from; i < to; i++) {
+                    if (first) kernels.scale(s, in[i], 0, result, i * numCols, numCols);
+                    else kernels.axpy(s, in[i], 0, result, i * numCols, numCols);
+                }
+            }
+            else {
+                // out[i][j] = in[j][i]: walk a few output rows at a time so reads of in[j] stay contiguous
+                for (int i0 = from; i0 < to; i0 += TRANSPOSE_BLOCK) {
+                    int i1 = Math.min(i0 + TRANSPOSE_BLOCK, to);
+                    for (int j = 0; j < numCols; j++) {
+                        double[] src = in[j];
+                        for (int i = i0; i < i1; i++) {
+                            if (first) result[i * numCols + j] = s * src[i];
+                            else result[i * numCols + j] += s * src[i];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The output, numRows() x numCols() in row-major order.
+     */
+    double[] getResult() {
+        return result;
+    }
+}
@@ -0,0 +1,41 @@
+package spl.lae;
+
+import java.util.Arrays;
+
+/**
+ * Completed-job counts and latencies for batch mode: throughput since the first job
+ * started and latency percentiles over every job seen.
+ */
+class JobStats {
+
+    private long[] latencies = new long[1024];
+    private int count = 0;
+    private int failed = 0;
+    private long firstStart = -1;
+    private long lastEnd = 0;
+
+    synchronized void record(long startNanos, long endNanos, boolean ok) {
+        if (count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+        latencies[count++] = endNanos - startNanos;
+        if (!ok) failed++;
+        if (firstStart < 0 || startNanos < firstStart) firstStart = startNanos;
+        lastEnd = Math.max(lastEnd, endNanos);
+    }
+
+    synchronized String getReport() {
+        if (count == 0) return "--- Jobs ---\nJobs: 0\n";
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        double seconds = Math.max(lastEnd - firstStart, 1) / 1e9;
+        return String.format("--- Jobs ---\nJobs: %d | Failed: %d | Throughput: %.2f jobs/s\n"
+                        + "Latency ms | p50: %.2f | p90: %.2f | p99: %.2f | max: %.2f\n",
+                count, failed, count / seconds,
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99), sorted[count - 1] / 1e6);
+    }
+
+    // nearest-rank percentile, in milliseconds
+    private static double percentile(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(rank, 1) - 1] / 1e6;
+    }
+}
@@ -3,51 +3,879 @@ package spl.lae;
 import parser.*;
 import memory.*;
 import scheduling.*;
+import metrics.AllocationCounter;
+import metrics.EngineMetrics;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 
 public class LinearAlgebraEngine {
 
+    private static final long DEFAULT_CACHE_BYTES = Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 4);
+    private static final long DEFAULT_POOL_BYTES = Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 8);
+    private static final long CANCEL_POLL_MILLIS = 20; // how soon a cancelled async run notices
+
     private SharedMatrix leftMatrix = new SharedMatrix();
     private SharedMatrix rightMatrix = new SharedMatrix();
-    private TiredExecutor executor;
+    private TaskExecutor executor;
+    private TaskChunker chunker;
+    private final EngineMetrics metrics;
+    private final ResultCache cache = new ResultCache(DEFAULT_CACHE_BYTES);
+    private final BufferPool pool = new BufferPool(DEFAULT_POOL_BYTES);
+    private final AllocationCounter allocations = new AllocationCounter();
+    private final long[] workerThreadIds; // empty when the executor's threads are not fixed
+    private final ExecutorService coordinators = Executors.newVirtualThreadPerTaskExecutor(); // one per runAsync
+    private volatile boolean optimizing = true;
+    private volatile boolean sparse = true;
+    private volatile int strassenCutoff = 0; // 0 = always use the classic blocked product
+    private volatile String strassenReport = "";
+    private final AtomicLong symmetricProducts = new AtomicLong(); // products computed as an upper triangle
+    private volatile String optimizerReport = "";
+    private volatile String allocationReport = "";
+    private volatile TileStore tiles = null; // set: trees with an out-of-core leaf are computed tile by tile
 
     public LinearAlgebraEngine(int numThreads) {
         // TODO: create executor with given thread count
+        this(numThreads, SchedulingMode.FATIGUE_HEAP);
+    }
+
+    public LinearAlgebraEngine(int numThreads, SchedulingMode mode) {
+        this(TaskExecutor.create(requirePositive(numThreads), mode));
+    }
+
+    /**
+     * An engine running its tasks on the given executor, which it shuts down in shutdown().
+     */
+    public LinearAlgebraEngine(TaskExecutor executor) {
+        int numThreads = executor.getParallelism();
+        this.executor = executor;
+        this.chunker = new TaskChunker(numThreads, executor.getThroughputModel());
+        this.metrics = new EngineMetrics(numThreads);
+        this.workerThreadIds = executor.getWorkerThreadIds();
+    }
+
+    private static int requirePositive(int numThreads) {
+        if (numThreads <= 0) {
+            throw new IllegalArgumentException("Engine: number of threads must be positive");
+        }
+        return numThreads;
     }
 
+    /**
+     * Resolves the tree as a DAG: every node whose operands are ready is started at once,
+     * independent subtrees share the executor concurrently, and a parent starts as soon
+     * as its last child finishes. Only this thread loads operands and resolves nodes.
+     */
     public ComputationNode run(ComputationNode computationRoot) {
         // TODO: resolve computation tree step by step until final matrix is produced
-        return null;
+        return run(computationRoot, null);
+    }
+
+    /**
+     * Runs the tree like run(), on a coordinator thread of its own, and returns at once; many
+     * trees can be in flight together. Cancelling the future, or timing it out with orTimeout,
+     * stops the run: no further nodes start, queued tasks are skipped, and the tree is left
+     * partly resolved. Tasks already running finish in the background.
+     */
+    public CompletableFuture<ComputationNode> runAsync(ComputationNode computationRoot) {
+        CompletableFuture<ComputationNode> result = new CompletableFuture<>();
+        coordinators.execute(() -> {
+            try {
+                result.complete(run(computationRoot, result::isDone));
+            }
+            catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        return result;
+    }
+
+    // cancelled: polled while waiting for nodes, or null if the run cannot be cancelled
+    private ComputationNode run(ComputationNode computationRoot, BooleanSupplier cancelled) {
+        long[] threadIds = Arrays.copyOf(workerThreadIds, workerThreadIds.length + 1);
+        threadIds[threadIds.length - 1] = Thread.currentThread().threadId();
+        long allocatedBefore = allocatedBytes(threadIds);
+        long pooledBefore = pool.getReusedBytes();
+        long startNanos = System.nanoTime();
+
+        ComputationNode root = computationRoot;
+        if (optimizing) {
+            ExpressionOptimizer optimizer = new ExpressionOptimizer();
+            root = optimizer.optimize(computationRoot);
+            optimizerReport = String.format("--- Optimizer ---\nEstimated FLOPs: before %d | after %d\n",
+                    optimizer.getFlopsBefore(), optimizer.getFlopsAfter());
+        }
+        int inPlace = execute(root, cancelled);
+        // hand the optimized root's storage over as is, so the writers stream it without a copy
+        if (root != computationRoot && root.isTiled()) {
+            computationRoot.resolve(root.getTiledMatrix());
+        }
+        else if (root != computationRoot && root.isSparse()) {
+            computationRoot.resolve(root.getSparseMatrix());
+        }
+        else if (root != computationRoot && root.hasSharedMatrix()) {
+            computationRoot.resolve(root.getSharedMatrix());
+        }
+        else if (root != computationRoot) {
+            computationRoot.resolve(root.getMatrix());
+        }
+
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        double allocatedMb = (allocatedBytes(threadIds) - allocatedBefore) / (double) (1 << 20);
+        allocationReport = String.format("--- Allocation ---\nLast run: %s | %d MB of buffers reused | %d nodes computed in place\n%s",
+                allocations.isSupported() ? String.format("%.1f MB allocated (%.0f MB/s)", allocatedMb, allocatedMb / Math.max(seconds, 1e-9))
+                        : "allocated bytes unavailable on this JVM",
+                (pool.getReusedBytes() - pooledBefore) >> 20, inPlace, pool.getReport());
+        return computationRoot;
+    }
+
+    // the workers and the calling thread, or every thread when the workers are not fixed (virtual threads)
+    private long allocatedBytes(long[] threadIds) {
+        return workerThreadIds.length == 0 ? allocations.allocatedBytes() : allocations.allocatedBytes(threadIds);
+    }
+
+    /**
+     * Returns the number of nodes whose result was written over an operand instead of new storage.
+     */
+    private int execute(ComputationNode computationRoot, BooleanSupplier cancelled) {
+        nestAll(computationRoot);
+        // out of core, every leaf goes to tiles and every node runs on its own: no sparse or
+        // fused kernels, and no cache, whose entries would have to fit in the heap
+        TileStore store = tiles;
+        List<TiledMatrix> tiledLeaves = new ArrayList<>();
+        boolean outOfCore = store != null && hasTiledLeaf(computationRoot);
+        if (outOfCore) tileLeaves(computationRoot, store, tiledLeaves);
+        else if (sparse) sparsifyLeaves(computationRoot);
+
+        Map<ComputationNode, ResultCache.Key> keys = cache.isEnabled() && !outOfCore
+                ? new SubtreeHasher().hashAll(computationRoot) : new IdentityHashMap<>();
+        resolveCached(computationRoot, keys);
+
+        Map<ComputationNode, ComputationNode> parents = new IdentityHashMap<>();
+        Map<ComputationNode, Integer> pendingChildren = new IdentityHashMap<>();
+        Map<ComputationNode, FusedKernel> fused = new IdentityHashMap<>();
+        List<ComputationNode> ready = new ArrayList<>();
+        collect(computationRoot, null, parents, pendingChildren, fused, !outOfCore, ready);
+
+        // results of this run that nothing but their parent will read; their storage can be reused
+        Set<ComputationNode> dead = Collections.newSetFromMap(new IdentityHashMap<>());
+        BlockingQueue<NodeJob> finished = new LinkedBlockingQueue<>();
+        List<NodeJob> running = new ArrayList<>(); // started, and not yet taken off finished
+        int inPlace = 0;
+        boolean completed = false;
+
+        try {
+            while (true) {
+                for (ComputationNode node : ready) {
+                    running.add(start(node, fused.get(node), dead, finished));
+                }
+                ready.clear();
+                if (running.isEmpty()) break;
+
+                NodeJob job;
+                try {
+                    job = cancelled == null ? finished.take() : finished.poll(CANCEL_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Engine: interrupted while waiting for node results", e);
+                }
+                if (job == null) {
+                    if (cancelled.getAsBoolean()) throw new CancellationException("Engine: run cancelled");
+                    continue;
+                }
+                if (job.getFailure() != null) throw asRuntime(job.getFailure());
+                running.remove(job);
+
+                job.resolve();
+                job.record();
+                reportStrassen(job);
+                recycle(job, dead);
+                if (job.inPlace) inPlace++;
+                ComputationNode parent = parents.get(job.node);
+                ResultCache.Key key = keys.get(job.node);
+                boolean retained = false;
+                if (key != null && job.node.isSparse()) retained = cache.put(key, job.node.getSparseMatrix());
+                else if (key != null && !overwritesOperands(parent, fused)) retained = cache.put(key, job.node.getSharedMatrix());
+                if (parent != null && !retained) dead.add(job.node);
+                if (parent != null && pendingChildren.merge(parent, -1, Integer::sum) == 0) {
+                    ready.add(parent);
+                }
+            }
+            completed = true;
+        }
+        finally {
+            // a failed or cancelled run still releases its scratch files and pooled storage
+            if (!completed) abandon(running, dead);
+            for (TiledMatrix leaf : tiledLeaves) {
+                if (leaf != computationRoot.getTiledMatrix()) leaf.delete();
+            }
+        }
+        return inPlace;
+    }
+
+    // Stops the nodes still running, then releases their output and the results nothing will read now.
+    private void abandon(List<NodeJob> running, Set<ComputationNode> dead) {
+        for (NodeJob job : running) {
+            job.abandon(); // once it returns no task of the node runs, so its storage can go
+            job.release(pool);
+        }
+        for (ComputationNode node : dead) {
+            if (node.isTiled()) node.getTiledMatrix().delete();
+            else if (node.hasSharedMatrix()) node.getSharedMatrix().recycle(pool);
+        }
+        dead.clear();
+    }
+
+    /**
+     * True if parent will run as a lone ADD, NEGATE or TRANSPOSE, which writes over a dead operand.
+     * Such an operand is not cached: the parent's own entry covers the same subtree.
+     */
+    private static boolean overwritesOperands(ComputationNode parent, Map<ComputationNode, FusedKernel> fused) {
+        return parent != null && !fused.containsKey(parent) && FusedKernel.isElementWise(parent);
+    }
+
+    // Gives the storage this job no longer needs back to the pool: packed panels, scratch copies,
+    // and dead operands whose storage did not become the result.
+    private void recycle(NodeJob job, Set<ComputationNode> dead) {
+        if (job.product != null) job.product.release();
+        for (SharedMatrix copy : job.scratch) {
+            copy.recycle(pool);
+        }
+        for (ComputationNode operand : job.operands) {
+            if (!dead.remove(operand)) continue;
+            if (operand.isTiled()) operand.getTiledMatrix().delete();
+            else if (operand.hasSharedMatrix() && operand.getSharedMatrix() != job.left) {
+                operand.getSharedMatrix().recycle(pool);
+            }
+        }
+    }
+
+    // Resolves every topmost subtree already in the cache, so none of its tasks are scheduled.
+    private void resolveCached(ComputationNode node, Map<ComputationNode, ResultCache.Key> keys) {
+        if (node.getNodeType() == ComputationNodeType.MATRIX) return;
+        ResultCache.Key key = keys.get(node);
+        Object cached = key == null ? null : cache.get(key);
+        if (cached instanceof SparseMatrix hit) {
+            node.resolve(hit);
+            return;
+        }
+        if (cached != null) {
+            node.resolve((SharedMatrix) cached);
+            return;
+        }
+        for (ComputationNode child : node.getChildren()) {
+            resolveCached(child, keys);
+        }
+    }
+
+    // Switches every leaf with few enough non-zeros to compressed sparse storage.
+    private void sparsifyLeaves(ComputationNode node) {
+        if (node.getNodeType() != ComputationNodeType.MATRIX) {
+            for (ComputationNode child : node.getChildren()) {
+                sparsifyLeaves(child);
+            }
+        }
+        else if (!node.isSparse() && isSparseEnough(node)) {
+            node.resolve(SparseMatrix.fromRows(node.getMatrix()));
+        }
+    }
+
+    // Counts non-zeros row by row, giving up as soon as there are too many.
+    private static boolean isSparseEnough(ComputationNode leaf) {
+        int[] shape = leaf.getMatrixShape();
+        if (shape[0] == 0 || shape[1] == 0) return false;
+        long limit = (long) (SparseMatrix.SPARSE_DENSITY * shape[0] * shape[1]);
+        long nonZeros = 0;
+        double[] row = new double[shape[1]];
+        for (int i = 0; i < shape[0]; i++) {
+            leaf.readRow(i, row);
+            for (double v : row) {
+                if (v != 0 && ++nonZeros > limit) return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasTiledLeaf(ComputationNode node) {
+        if (node.getNodeType() == ComputationNodeType.MATRIX) return node.isTiled();
+        for (ComputationNode child : node.getChildren()) {
+            if (hasTiledLeaf(child)) return true;
+        }
+        return false;
+    }
+
+    // Moves every in-memory leaf to tiles, so all operands of the tree share one representation;
+    // every leaf's tiles are collected so they can be deleted once the run is over.
+    private static void tileLeaves(ComputationNode node, TileStore store, List<TiledMatrix> leaves) {
+        if (node.getNodeType() != ComputationNodeType.MATRIX) {
+            for (ComputationNode child : node.getChildren()) {
+                tileLeaves(child, store, leaves);
+            }
+            return;
+        }
+        if (!node.isTiled()) {
+            int[] shape = node.getMatrixShape();
+            node.resolve(TiledMatrix.fromRows(store, shape[0], shape[1], (row, i) -> node.readRow(i, row)));
+        }
+        leaves.add(node.getTiledMatrix());
+    }
+
+    // Makes every n-ary operation binary up front, so the DAG shape is fixed before scheduling.
+    private void nestAll(ComputationNode node) {
+        if (node.getNodeType() == ComputationNodeType.MATRIX) return;
+        node.associativeNesting();
+        for (ComputationNode child : node.getChildren()) {
+            nestAll(child);
+        }
+    }
+
+    /**
+     * Builds the dependency counts. A chain of element-wise nodes becomes one fused node
+     * whose dependencies are the chain's operands; its inner nodes are never scheduled.
+     */
+    private void collect(ComputationNode node, ComputationNode parent, Map<ComputationNode, ComputationNode> parents,
+                         Map<ComputationNode, Integer> pendingChildren, Map<ComputationNode, FusedKernel> fused,
+                         boolean fusing, List<ComputationNode> ready) {
+        if (node.getNodeType() == ComputationNodeType.MATRIX) return;
+        if (parent != null) parents.put(node, parent);
+        List<ComputationNode> operands = node.getChildren();
+        FusedKernel kernel = fusing ? FusedKernel.compile(node) : null;
+        if (kernel != null && allSparse(kernel.getOperands())) {
+            kernel = null; // the fused kernel is dense; let each node run its sparse kernel instead
+        }
+        if (kernel != null) {
+            fused.put(node, kernel);
+            operands = kernel.getOperands();
+        }
+        int pending = 0;
+        for (ComputationNode child : operands) {
+            if (child.getNodeType() != ComputationNodeType.MATRIX) {
+                pending++;
+                collect(child, node, parents, pendingChildren, fused, fusing, ready);
+            }
+        }
+        pendingChildren.put(node, pending);
+        if (pending == 0) ready.add(node);
+    }
+
+    private static boolean allSparse(List<ComputationNode> nodes) {
+        for (ComputationNode node : nodes) {
+            if (!node.isSparse()) return false;
+        }
+        return true;
+    }
+
+    private static boolean anyTiled(List<ComputationNode> nodes) {
+        for (ComputationNode node : nodes) {
+            if (node.isTiled()) return true;
+        }
+        return false;
+    }
+
+    private static boolean anySparse(List<ComputationNode> nodes) {
+        for (ComputationNode node : nodes) {
+            if (node.isSparse()) return true;
+        }
+        return false;
+    }
+
+    // Creates the node's tasks and submits them without waiting; the job lands in finished once they are done.
+    private NodeJob start(ComputationNode node, FusedKernel kernel, Set<ComputationNode> dead,
+                          BlockingQueue<NodeJob> finished) {
+        NodeJob job;
+        if (kernel != null) {
+            job = new NodeJob(node, null, null, metrics);
+            job.operands = kernel.getOperands();
+            kernel.prepare(pool);
+            job.fused = kernel;
+            long elements = (long) kernel.numRows() * kernel.numCols();
+            job.rows = kernel.numRows();
+            job.cols = kernel.numCols();
+            job.flops = elements * kernel.numTerms();
+            job.bytesMoved = elements * (kernel.numTerms() + 1) * Double.BYTES;
+            job.tasks = chunker.chunkRanges("FUSED", kernel.numRows(), kernel.numCols() * kernel.numTerms(),
+                    kernel::computeRows);
+        }
+        else if (node.getChildren() != null && anyTiled(node.getChildren())) {
+            job = prepareTiled(node);
+            job.operands = node.getChildren();
+        }
+        else if (node.getChildren() != null && anySparse(node.getChildren())) {
+            job = prepareSparse(node);
+            job.operands = node.getChildren();
+        }
+        else if (FusedKernel.isElementWise(node)) {
+            job = prepareInPlace(node, dead);
+        }
+        else {
+            job = prepare(node, new SharedMatrix(), new SharedMatrix());
+            job.operands = node.getChildren();
+        }
+        job.batch = executor.submitAsync(job.track(() -> finished.add(job)));
+        job.batch.whenComplete((done, error) -> {
+            // tracked tasks never throw, so this is a dispatch failure: the rest of the tasks will never run
+            if (error != null && !(error instanceof CancellationException)) {
+                job.fail(error);
+                finished.add(job);
+            }
+        });
+        return job;
+    }
+
+    private static RuntimeException asRuntime(Throwable t) {
+        if (t instanceof RuntimeException) return (RuntimeException) t;
+        if (t instanceof Error) throw (Error) t;
+        return new RuntimeException(t);
     }
 
     public void loadAndCompute(ComputationNode node) {
         // TODO: load operand matrices
         // TODO: create compute tasks & submit tasks to executor
+        NodeJob job = prepare(node, leftMatrix, rightMatrix);
+        executor.submitAll(job.track(() -> {}));
+        if (job.getFailure() != null) {
+            throw asRuntime(job.getFailure());
+        }
+        if (job.product != null) {
+            leftMatrix.loadFlat(job.product.getFlatResult(), job.product.numRows(), job.product.numCols(),
+                    VectorOrientation.ROW_MAJOR);
+            job.product.release();
+        }
+        if (job.strassen != null) {
+            leftMatrix.loadRowMajor(job.strassen.getResult());
+            reportStrassen(job);
+        }
+        job.record();
+    }
+
+    /**
+     * Loads the node's operands into the given matrices and creates its tasks.
+     */
+    private NodeJob prepare(ComputationNode node, SharedMatrix left, SharedMatrix right) {
+        List<ComputationNode> children = node.getChildren();
+        NodeJob job = new NodeJob(node, left, right, metrics);
+        switch (node.getNodeType()) {
+            case ADD: {
+                requireOperands(children, 2, "Add");
+                double[][] a = children.get(0).getMatrix();
+                double[][] b = children.get(1).getMatrix();
+                if (a.length != b.length || a[0].length != b[0].length) {
+                    throw new IllegalArgumentException("Add: dimensions mismatch");
+                }
+                left.loadRowMajor(a);
+                right.loadRowMajor(b);
+                job.tasks = createAddTasks(left, right, node.isNegated());
+                estimate(job, a.length, a[0].length, node.isNegated() ? 2 : 1, 3);
+                break;
+            }
+            case MULTIPLY: {
+                requireOperands(children, 2, "Multiply");
+                // operands are only read, so the children's storage (e.g. a mapped file) is used as is
+                SharedMatrix a = children.get(0).getSharedMatrix();
+                SharedMatrix b = children.get(1).getSharedMatrix();
+                if (a.numCols() != b.numRows()) {
+                    throw new IllegalArgumentException("Multiply: dimensions mismatch");
+                }
+                job.rows = a.numRows();
+                job.cols = b.numCols();
+                // T(X) * X, X * T(X) or S * S for symmetric S: the product is symmetric, so only its upper triangle is computed
+                boolean symmetric = a.isTransposeOf(b);
+                if (!symmetric && StrassenMultiplier.applies(a, b, strassenCutoff)) {
+                    job.strassen = new StrassenMultiplier(a, b, node.isNegated(), strassenCutoff);
+                    job.tasks = new ArrayList<>();
+                    for (BlockedMultiplier leaf : job.strassen.getLeaves()) {
+                        job.tasks.addAll(createTileTasks(leaf));
+                    }
+                    job.flops = job.strassen.leafFlops();
+                }
+                else {
+                    job.product = new BlockedMultiplier(a, b, node.isNegated(), pool, symmetric);
+                    job.tasks = createTileTasks(job.product);
+                    job.flops = symmetric ? (long) a.numRows() * (a.numRows() + 1) * a.numCols()
+                            : 2L * a.numRows() * a.numCols() * b.numCols();
+                    if (symmetric) symmetricProducts.incrementAndGet();
+                }
+                job.bytesMoved = ((long) a.numRows() * a.numCols() + (long) b.numRows() * b.numCols()
+                        + (long) a.numRows() * b.numCols()) * Double.BYTES;
+                break;
+            }
+            case NEGATE:
+                requireOperands(children, 1, "Negate");
+                left.loadRowMajor(children.get(0).getMatrix());
+                job.tasks = createNegateTasks(left);
+                estimate(job, left.numRows(), left.numCols(), 1, 2);
+                break;
+            case TRANSPOSE:
+                requireOperands(children, 1, "Transpose");
+                left.loadRowMajor(children.get(0).getMatrix());
+                job.tasks = createTransposeTasks(left);
+                estimate(job, left.numCols(), left.numRows(), 0, 2);
+                break;
+            default:
+                throw new IllegalArgumentException("Engine: cannot compute node of type " + node.getNodeType());
+        }
+        return job;
+    }
+
+    /**
+     * Creates the tasks of a lone ADD, NEGATE or TRANSPOSE in the DAG. The result is written over
+     * an operand that is dead (an intermediate of this run that nothing else reads), or else over
+     * a pooled copy of one; nothing is copied out into double[][] on the way.
+     */
+    private NodeJob prepareInPlace(ComputationNode node, Set<ComputationNode> dead) {
+        List<ComputationNode> children = node.getChildren();
+        NodeJob job;
+        switch (node.getNodeType()) {
+            case ADD: {
+                requireOperands(children, 2, "Add");
+                ComputationNode a = children.get(0);
+                ComputationNode b = children.get(1);
+                if (!Arrays.equals(a.getMatrixShape(), b.getMatrixShape())) {
+                    throw new IllegalArgumentException("Add: dimensions mismatch");
+                }
+                if (!isReusable(a, dead) && isReusable(b, dead)) {
+                    // addition commutes, so write over whichever operand is dead
+                    ComputationNode swap = a;
+                    a = b;
+                    b = swap;
+                }
+                job = new NodeJob(node, writable(a, dead), null, metrics);
+                job.right = readable(b, job.left.getOrientation(), job);
+                job.tasks = createAddTasks(job.left, job.right, node.isNegated());
+                estimate(job, job.left.numRows(), job.left.numCols(), node.isNegated() ? 2 : 1, 3);
+                break;
+            }
+            case NEGATE:
+                requireOperands(children, 1, "Negate");
+                job = new NodeJob(node, writable(children.get(0), dead), null, metrics);
+                job.tasks = createNegateTasks(job.left);
+                estimate(job, job.left.numRows(), job.left.numCols(), 1, 2);
+                break;
+            case TRANSPOSE: {
+                requireOperands(children, 1, "Transpose");
+                ComputationNode a = children.get(0);
+                if (dead.contains(a)) {
+                    // a dead operand's storage goes back to the pool once this node is done, so a view over it
+                    // would be overwritten under the parent: transpose it in place instead, loading it into
+                    // engine storage first if it came back as rows (a Strassen result, a sparse sum that filled in)
+                    if (!a.isSparse()) a.getSharedMatrix();
+                    job = new NodeJob(node, writable(a, dead), null, metrics);
+                    job.tasks = createTransposeTasks(job.left);
+                    estimate(job, job.left.numCols(), job.left.numRows(), 0, 2);
+                    break;
+                }
+                // the operand stays live (a leaf or a cached result, whose storage is never recycled), so read
+                // it through a view instead of copying it: the parent (a MULTIPLY, or the writer) reads the view
+                // with swapped strides. A leaf is loaded into engine storage once, and a product like
+                // T(A) * A reads that one copy twice.
+                job = new NodeJob(node, a.getSharedMatrix().transposedView(), null, metrics);
+                job.tasks = new ArrayList<>();
+                estimate(job, job.left.numRows(), job.left.numCols(), 0, 0);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Engine: cannot compute node of type " + node.getNodeType());
+        }
+        job.operands = children;
+        for (ComputationNode operand : children) {
+            job.inPlace |= isReusable(operand, dead) && operand.getSharedMatrix() == job.left;
+        }
+        return job;
+    }
+
+    // a view is never written: its storage belongs to a matrix that is still read elsewhere
+    private static boolean isReusable(ComputationNode operand, Set<ComputationNode> dead) {
+        return dead.contains(operand) && operand.hasSharedMatrix() && !operand.getSharedMatrix().isView();
+    }
+
+    // the operand's own storage if it is dead, otherwise a pooled copy in the same layout
+    private SharedMatrix writable(ComputationNode operand, Set<ComputationNode> dead) {
+        if (isReusable(operand, dead)) return operand.getSharedMatrix();
+        if (operand.hasSharedMatrix()) {
+            SharedMatrix source = operand.getSharedMatrix();
+            return source.copy(source.getOrientation(), pool);
+        }
+        SharedMatrix copy = new SharedMatrix();
+        copy.loadRowMajor(operand.getMatrix(), pool);
+        return copy;
+    }
+
+    // the operand's storage if it is already laid out as orientation, otherwise a pooled scratch copy
+    private SharedMatrix readable(ComputationNode operand, VectorOrientation orientation, NodeJob job) {
+        SharedMatrix copy;
+        if (operand.hasSharedMatrix()) {
+            SharedMatrix source = operand.getSharedMatrix();
+            if (source.getOrientation() == orientation) return source;
+            copy = source.copy(orientation, pool);
+        }
+        else {
+            copy = new SharedMatrix();
+            if (orientation == VectorOrientation.ROW_MAJOR) copy.loadRowMajor(operand.getMatrix(), pool);
+            else copy.loadColumnMajor(operand.getMatrix(), pool);
+        }
+        job.scratch.add(copy);
+        return copy;
+    }
+
+    /**
+     * Creates the tasks of a node with at least one sparse operand.
+     */
+    private NodeJob prepareSparse(ComputationNode node) {
+        List<ComputationNode> children = node.getChildren();
+        double sign = node.isNegated() ? -1 : 1;
+        SparseKernel kernel;
+        switch (node.getNodeType()) {
+            case ADD: {
+                requireOperands(children, 2, "Add");
+                ComputationNode a = children.get(0);
+                ComputationNode b = children.get(1);
+                if (a.isSparse() && b.isSparse()) kernel = SparseKernel.add(a.getSparseMatrix(), b.getSparseMatrix(), sign);
+                else if (a.isSparse()) kernel = SparseKernel.add(a.getSparseMatrix(), b.getMatrix(), sign);
+                else kernel = SparseKernel.add(b.getSparseMatrix(), a.getMatrix(), sign);
+                break;
+            }
+            case MULTIPLY: {
+                requireOperands(children, 2, "Multiply");
+                ComputationNode a = children.get(0);
+                ComputationNode b = children.get(1);
+                if (a.isSparse() && b.isSparse()) kernel = SparseKernel.multiply(a.getSparseMatrix(), b.getSparseMatrix(), sign);
+                else if (a.isSparse()) kernel = SparseKernel.multiply(a.getSparseMatrix(), b.getMatrix(), sign);
+                else kernel = SparseKernel.multiply(a.getMatrix(), b.getSparseMatrix(), sign);
+                break;
+            }
+            case NEGATE:
+                requireOperands(children, 1, "Negate");
+                kernel = SparseKernel.negate(children.get(0).getSparseMatrix());
+                break;
+            case TRANSPOSE:
+                requireOperands(children, 1, "Transpose");
+                kernel = SparseKernel.transpose(children.get(0).getSparseMatrix());
+                break;
+            default:
+                throw new IllegalArgumentException("Engine: cannot compute node of type " + node.getNodeType());
+        }
+        NodeJob job = new NodeJob(node, null, null, metrics);
+        job.sparse = kernel;
+        job.rows = kernel.numRows();
+        job.cols = kernel.numCols();
+        job.flops = node.getNodeType() == ComputationNodeType.MULTIPLY ? 2 * kernel.work() : kernel.work();
+        job.bytesMoved = kernel.work() * (Integer.BYTES + Double.BYTES); // an index and a value per step
+        int rows = kernel.rowsToCompute();
+        int rowWidth = (int) Math.min(Integer.MAX_VALUE, Math.max(1, kernel.work() / Math.max(rows, 1)));
+        job.tasks = chunker.chunkRanges("SPARSE", rows, rowWidth, kernel::computeRows);
+        return job;
+    }
+
+    /**
+     * Creates the tasks of a node whose operands are out of core: one task per output tile.
+     */
+    private NodeJob prepareTiled(ComputationNode node) {
+        List<ComputationNode> children = node.getChildren();
+        double sign = node.isNegated() ? -1 : 1;
+        TiledOperation operation;
+        switch (node.getNodeType()) {
+            case ADD:
+                requireOperands(children, 2, "Add");
+                operation = TiledOperation.add(children.get(0).getTiledMatrix(), children.get(1).getTiledMatrix(), sign);
+                break;
+            case MULTIPLY:
+                requireOperands(children, 2, "Multiply");
+                operation = TiledOperation.multiply(children.get(0).getTiledMatrix(), children.get(1).getTiledMatrix(), sign);
+                break;
+            case NEGATE:
+                requireOperands(children, 1, "Negate");
+                operation = TiledOperation.negate(children.get(0).getTiledMatrix());
+                break;
+            case TRANSPOSE:
+                requireOperands(children, 1, "Transpose");
+                operation = TiledOperation.transpose(children.get(0).getTiledMatrix());
+                break;
+            default:
+                throw new IllegalArgumentException("Engine: cannot compute node of type " + node.getNodeType());
+        }
+        NodeJob job = new NodeJob(node, null, null, metrics);
+        job.tiled = operation;
+        job.rows = operation.getResult().numRows();
+        job.cols = operation.getResult().numCols();
+        job.flops = node.getNodeType() == ComputationNodeType.MULTIPLY ? 2 * operation.work() : operation.work();
+        job.bytesMoved = operation.work() * 2 * Double.BYTES; // tiles are re-read from the cache or the scratch files
+        job.tasks = new ArrayList<>();
+        for (int i = 0; i < operation.tileCount(); i++) {
+            int tile = i;
+            job.tasks.add(() -> operation.computeTile(tile));
+        }
+        return job;
+    }
+
+    private void reportStrassen(NodeJob job) {
+        if (job.strassen == null) return;
+        strassenReport = String.format("--- Strassen ---\nLast product: %d levels, %d leaf products | Sampled relative error vs classic: %.3e\n",
+                job.strassen.getLevels(), job.strassen.getLeaves().size(), job.strassen.sampledError());
+    }
+
+    // element-wise cost: flopsPerElement per output element, matricesTouched full passes over memory
+    private static void estimate(NodeJob job, int rows, int cols, int flopsPerElement, int matricesTouched) {
+        long elements = (long) rows * cols;
+        job.rows = rows;
+        job.cols = cols;
+        job.flops = elements * flopsPerElement;
+        job.bytesMoved = elements * matricesTouched * Double.BYTES;
+    }
+
+    private void requireOperands(List<ComputationNode> children, int expected, String operation) {
+        if (children == null || children.size() != expected) {
+            throw new IllegalArgumentException(operation + ": expected " + expected + " operands");
+        }
     }
 
     public List<Runnable> createAddTasks() {
         // TODO: return tasks that perform row-wise addition
-        return null;
+        return createAddTasks(leftMatrix, rightMatrix, false);
+    }
+
+    private List<Runnable> createAddTasks(SharedMatrix left, SharedMatrix right, boolean negate) {
+        if (negate) {
+            // -(A + B): negate each row while it is still in cache
+            return chunker.chunk(ComputationNodeType.ADD.name(), left.length(), rowWidth(left), i -> {
+                left.get(i).add(right.get(i));
+                left.get(i).negate();
+            });
+        }
+        return chunker.chunk(ComputationNodeType.ADD.name(), left.length(), rowWidth(left),
+                i -> left.get(i).add(right.get(i)));
     }
 
     public List<Runnable> createMultiplyTasks() {
         // TODO: return tasks that perform row × matrix multiplication
-        return null;
+        return createTileTasks(new BlockedMultiplier(leftMatrix, rightMatrix));
+    }
+
+    // one task per output tile; the right operand is packed once for the whole node
+    private List<Runnable> createTileTasks(BlockedMultiplier multiplier) {
+        List<Runnable> tasks = new ArrayList<>();
+        for (int rb = 0; rb < multiplier.rowBlocks(); rb++) {
+            for (int cb = 0; cb < multiplier.colBlocks(); cb++) {
+                if (!multiplier.needsTile(rb, cb)) continue;
+                int rowBlock = rb;
+                int colBlock = cb;
+                tasks.add(new CostedTask(ComputationNodeType.MULTIPLY.name(), multiplier.tileWork(rb, cb),
+                        () -> multiplier.computeTile(rowBlock, colBlock)));
+            }
+        }
+        return tasks;
     }
 
     public List<Runnable> createNegateTasks() {
         // TODO: return tasks that negate rows
-        return null;
+        return createNegateTasks(leftMatrix);
+    }
+
+    private List<Runnable> createNegateTasks(SharedMatrix left) {
+        return chunker.chunk(ComputationNodeType.NEGATE.name(), left.length(), rowWidth(left),
+                i -> left.get(i).negate());
+    }
+
+    private static int rowWidth(SharedMatrix matrix) {
+        return matrix.length() == 0 ? 0 : matrix.get(0).length();
     }
 
     public List<Runnable> createTransposeTasks() {
         // TODO: return tasks that transpose rows
-        return null;
+        return createTransposeTasks(leftMatrix);
+    }
+
+    // flat storage transposes by swapping orientation, so one task covers the whole matrix
+    private List<Runnable> createTransposeTasks(SharedMatrix left) {
+        List<Runnable> tasks = new ArrayList<>();
+        tasks.add(left::transpose);
+        return tasks;
+    }
+
+    /**
+     * Turns the expression optimizer on or off for later runs (on by default).
+     */
+    public void setOptimizing(boolean optimizing) {
+        this.optimizing = optimizing;
     }
 
     public String getWorkerReport() {
         // TODO: return summary of worker activity
-        return null;
+        return executor.getWorkerReport() + chunker.getReport() + optimizerReport
+                + "Kernels: " + VectorKernels.get().describe() + "\n"
+                + "Symmetric products (upper triangle only): " + symmetricProducts.get() + "\n" + strassenReport + cache.getReport() + allocationReport
+                + (tiles == null ? "" : tiles.getReport()) + metrics.getReport();
+    }
+
+    /**
+     * Square products larger than cutoff use Strassen's recursion down to blocks of at most
+     * cutoff (clamped to StrassenMultiplier.MIN_CUTOFF); 0 turns it off, which is the default.
+     * About 2048 suits n >= 4096. The result differs from the classic product in rounding;
+     * the report shows a sampled relative error for the last such product.
+     */
+    public void setStrassenCutoff(int cutoff) {
+        this.strassenCutoff = Math.max(cutoff, 0);
+    }
+
+    /**
+     * Whether leaves with at most SparseMatrix.SPARSE_DENSITY non-zeros are switched to sparse storage.
+     */
+    public void setSparse(boolean sparse) {
+        this.sparse = sparse;
+    }
+
+    /**
+     * Byte budget for remembered subtree results; 0 disables the cache and drops what it holds.
+     */
+    public void setResultCacheBytes(long bytes) {
+        cache.setCapacity(bytes);
+    }
+
+    /**
+     * Lets trees with an out-of-core leaf (see InputParser) run with about budgetBytes of tiles
+     * in memory, the rest in scratch files under directory. In-memory leaves of such trees are
+     * moved to tiles too. Replaces (and deletes) any store set before.
+     */
+    public void setOutOfCore(Path directory, long budgetBytes) throws IOException {
+        TileStore old = tiles;
+        tiles = new TileStore(directory, TileStore.tileSizeFor(budgetBytes, executor.getParallelism()), budgetBytes);
+        if (old != null) old.close();
+    }
+
+    /**
+     * The out-of-core tile store, or null while out-of-core execution is off (the default).
+     */
+    public TileStore getTileStore() {
+        return tiles;
+    }
+
+    /**
+     * Structured counters for this engine; see EngineMetrics for snapshots and JMX registration.
+     */
+    public EngineMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void shutdown() throws InterruptedException {
+        coordinators.shutdown();
+        metrics.unregisterMBeans();
+        executor.shutdown();
+        if (tiles != null) tiles.close();
     }
 }
@@ -1,10 +1,214 @@
 package spl.lae;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+import javax.management.JMException;
 
 import parser.*;
+import scheduling.SchedulingMode;
 
 public class Main {
+
+    private static final String USAGE = String.join("\n",
+            "Usage:",
+            "  Main <threads> <input> <output>                 evaluate one expression file",
+            "  Main <threads> --stdin [jobs]                   JSON lines {\"input\", \"output\"} on stdin",
+            "  Main <threads> --socket <path> [jobs]           the same protocol on a Unix domain socket",
+            "  Main <threads> --watch <in-dir> <out-dir> [jobs]  every *.json dropped into in-dir",
+            "An output ending in .lmat is written in binary, one ending in .gz as gzip-compressed JSON.",
+            "-Dlae.scheduling=FATIGUE_HEAP (default), WORK_STEALING, ADAPTIVE or VIRTUAL_THREADS picks the executor.",
+            "-Dlae.jmx=<name> publishes the engine's metrics as MBeans under spl.lae:engine=<name>.",
+            "-Dlae.tileBudgetMB=N reads .lmat operands out of core, keeping about N MB of tiles in memory",
+            "  and the rest in scratch files under -Dlae.scratchDir (default: java.io.tmpdir).");
+
+    private static final int DEFAULT_CONCURRENT_JOBS = 2;
+
     public static void main(String[] args) throws IOException {
-      // TODO: main
+        if (args.length < 2) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        int numThreads;
+        try {
+            numThreads = Integer.parseInt(args[0]);
+        }
+        catch (NumberFormatException e) {
+            System.err.println(USAGE);
+            System.exit(1);
+            return;
+        }
+
+        if (!args[1].startsWith("--")) {
+            if (args.length != 3) {
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+            runSingle(numThreads, args[1], args[2]);
+            return;
+        }
+
+        try {
+            runBatch(numThreads, args);
+        }
+        catch (IllegalArgumentException | InterruptedException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void runSingle(int numThreads, String input, String output) throws IOException {
+        LinearAlgebraEngine engine;
+        try {
+            engine = newEngine(numThreads);
+        }
+        catch (IllegalArgumentException | IOException e) {
+            OutputWriter.write(e.getMessage(), output);
+            return;
+        }
+        try {
+            runJob(engine, input, output);
+        }
+        finally {
+            shutdown(engine);
+        }
+    }
+
+    private static void runBatch(int numThreads, String[] args) throws IOException, InterruptedException {
+        String mode = args[1];
+        int operands = mode.equals("--stdin") ? 0 : mode.equals("--socket") ? 1 : mode.equals("--watch") ? 2 : -1;
+        if (operands < 0 || args.length < 2 + operands || args.length > 3 + operands) {
+            throw new IllegalArgumentException(USAGE);
+        }
+        int jobs = args.length > 2 + operands ? Integer.parseInt(args[2 + operands]) : DEFAULT_CONCURRENT_JOBS;
+        if (jobs <= 0) throw new IllegalArgumentException("Batch: number of concurrent jobs must be positive");
+
+        LinearAlgebraEngine engine = newEngine(numThreads);
+        BatchServer server = new BatchServer(engine, jobs);
+        // socket and watch mode run until the process is stopped; report on the way out
+        Thread report = new Thread(() -> System.err.print(server.getReport()));
+        Runtime.getRuntime().addShutdownHook(report);
+        try {
+            switch (mode) {
+                case "--stdin": {
+                    BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+                    Writer out = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+                    server.serveLines(in, out);
+                    break;
+                }
+                case "--socket":
+                    server.serveSocket(Path.of(args[2]));
+                    break;
+                default:
+                    server.watch(Path.of(args[2]), Path.of(args[3]));
+                    break;
+            }
+        }
+        finally {
+            server.shutdown();
+            shutdown(engine);
+        }
+    }
+
+    private static LinearAlgebraEngine newEngine(int numThreads) throws IOException {
+        String name = System.getProperty("lae.scheduling", SchedulingMode.FATIGUE_HEAP.name());
+        SchedulingMode mode;
+        try {
+            mode = SchedulingMode.valueOf(name);
+        }
+        catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown scheduling mode: " + name);
+        }
+        LinearAlgebraEngine engine = new LinearAlgebraEngine(numThreads, mode);
+        Long budgetMb = Long.getLong("lae.tileBudgetMB");
+        if (budgetMb != null) {
+            if (budgetMb <= 0) throw new IllegalArgumentException("Tile budget must be positive: " + budgetMb);
+            Path scratch = Path.of(System.getProperty("lae.scratchDir", System.getProperty("java.io.tmpdir")));
+            engine.setOutOfCore(scratch, budgetMb << 20);
+        }
+        String jmxName = System.getProperty("lae.jmx");
+        if (jmxName != null) {
+            try {
+                engine.getMetrics().registerMBeans(jmxName);
+            }
+            catch (JMException e) {
+                shutdown(engine);
+                throw new IllegalArgumentException("Cannot publish metrics over JMX as " + jmxName + ": " + e.getMessage());
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * Parses, evaluates and writes one job, or writes the error in its place.
+     * Returns the error message, or null on success.
+     */
+    static String runJob(LinearAlgebraEngine engine, String input, String output) {
+        try {
+            writeResult(engine.run(parse(engine, input)), output);
+            return null;
+        }
+        catch (ParseException | IOException | RuntimeException e) {
+            return writeError(message(e), output);
+        }
+    }
+
+    static ComputationNode parse(LinearAlgebraEngine engine, String input) throws ParseException {
+        return new InputParser(true, engine.getTileStore()).parse(input);
+    }
+
+    /**
+     * Writes the error in place of the result; returns it, noting if it could not be written either.
+     */
+    static String writeError(String error, String output) {
+        try {
+            OutputWriter.write(error, output);
+        }
+        catch (IOException e) {
+            error += " (and the error could not be written: " + e.getMessage() + ")";
+        }
+        return error;
+    }
+
+    static String message(Throwable e) {
+        return e.getMessage() != null ? e.getMessage() : e.toString();
+    }
+
+    /**
+     * Writes the result in the format the output's extension asks for; an out-of-core result is deleted afterwards.
+     */
+    static void writeResult(ComputationNode result, String output) throws IOException {
+        try {
+            writeMatrix(result, output);
+        }
+        finally {
+            if (result.isTiled()) result.getTiledMatrix().delete();
+        }
+    }
+
+    private static void writeMatrix(ComputationNode result, String output) throws IOException {
+        if (output.endsWith(BinaryMatrixFormat.EXTENSION) && result.isTiled()) {
+            BinaryMatrixFormat.write(result.getTiledMatrix(), Path.of(output));
+        }
+        else if (output.endsWith(BinaryMatrixFormat.EXTENSION)) {
+            BinaryMatrixFormat.write(result.getSharedMatrix(), Path.of(output));
+        }
+        else {
+            OutputWriter.writeStreaming(result.getSharedMatrix(), output, output.endsWith(".gz"));
+        }
+    }
+
+    private static void shutdown(LinearAlgebraEngine engine) {
+        try {
+            engine.shutdown();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
-}
\ No newline at end of file
+}
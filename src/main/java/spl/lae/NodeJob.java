@@ -0,0 +1,178 @@
+package spl.lae;
+
+import memory.BlockedMultiplier;
+import memory.BufferPool;
+import memory.LockWaits;
+import memory.SharedMatrix;
+import memory.SparseKernel;
+import memory.SparseMatrix;
+import memory.StrassenMultiplier;
+import memory.TiledOperation;
+import memory.VectorOrientation;
+import metrics.EngineMetrics;
+import metrics.NodeEvent;
+import metrics.NodeSample;
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+import scheduling.CostedTask;
+import scheduling.TaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One operation node in flight: its own operand matrices and tasks, so several nodes
+ * can be computed at the same time on the shared executor.
+ */
+class NodeJob {
+
+    final ComputationNode node;
+    final SharedMatrix left;
+    SharedMatrix right;
+    BlockedMultiplier product = null; // set for MULTIPLY, holds the output tiles
+    StrassenMultiplier strassen = null; // set instead of product for a large square MULTIPLY in Strassen mode
+    FusedKernel fused = null; // set for a fused element-wise chain, holds the output rows
+    SparseKernel sparse = null; // set when an operand is sparse, holds the output
+    TiledOperation tiled = null; // set when the operands are out of core, holds the output tiles
+    List<Runnable> tasks;
+    List<ComputationNode> operands = List.of(); // nodes whose results this one reads
+    final List<SharedMatrix> scratch = new ArrayList<>(); // engine-owned copies to recycle once resolved
+    boolean inPlace = false; // the result was written into an operand's storage
+    CompletableFuture<Void> batch; // completes when the last task has run, set once submitted
+
+    // cost estimates for metrics, filled in when the tasks are created
+    int rows;
+    int cols;
+    long flops;
+    long bytesMoved;
+
+    private static final long ABANDON_POLL_NANOS = 100_000;
+
+    private final AtomicInteger remaining = new AtomicInteger(0);
+    private final AtomicInteger active = new AtomicInteger(0); // tasks inside their body right now
+    private volatile boolean abandoned = false;
+    private volatile Throwable failure = null;
+    private final EngineMetrics metrics;
+    private final ComputationNodeType type; // the node becomes a MATRIX once resolved
+    private final NodeEvent event = new NodeEvent();
+    private final long startedNanos = System.nanoTime();
+    private volatile long submittedNanos;
+    private final LongAdder queuedNanos = new LongAdder();
+    private final LongAdder executingNanos = new LongAdder();
+
+    NodeJob(ComputationNode node, SharedMatrix left, SharedMatrix right, EngineMetrics metrics) {
+        this.node = node;
+        this.left = left;
+        this.right = right;
+        this.metrics = metrics;
+        this.type = node.getNodeType();
+        event.begin();
+    }
+
+    /**
+     * Wraps the tasks so that failures are captured instead of killing a worker,
+     * and onDone runs exactly once, after the last task of this node finishes.
+     */
+    List<Runnable> track(Runnable onDone) {
+        remaining.set(tasks.size());
+        if (tasks.isEmpty()) {
+            onDone.run();
+        }
+        List<Runnable> tracked = new ArrayList<>(tasks.size());
+        for (Runnable task : tasks) {
+            Runnable wrapper = () -> {
+                active.incrementAndGet();
+                long begin = System.nanoTime();
+                long waitedBefore = LockWaits.currentThreadNanos();
+                try {
+                    if (!abandoned) task.run();
+                }
+                catch (Throwable t) {
+                    if (failure == null) failure = t;
+                }
+                finally {
+                    long end = System.nanoTime();
+                    queuedNanos.add(begin - submittedNanos);
+                    executingNanos.add(end - begin);
+                    metrics.recordTask(TaskExecutor.currentWorkerId(), end - begin,
+                            LockWaits.currentThreadNanos() - waitedBefore);
+                    active.decrementAndGet();
+                    if (remaining.decrementAndGet() == 0) onDone.run();
+                }
+            };
+            // keep what the executor needs to place and time the task
+            tracked.add(task instanceof CostedTask costed ? costed.withBody(wrapper) : wrapper);
+        }
+        submittedNanos = System.nanoTime();
+        return tracked;
+    }
+
+    /**
+     * Skips every task that has not started yet and waits for the running ones to return,
+     * so once this returns nothing writes the node's storage any more.
+     */
+    void abandon() {
+        abandoned = true;
+        if (batch != null) batch.cancel(false);
+        while (active.get() > 0) {
+            LockSupport.parkNanos(ABANDON_POLL_NANOS);
+        }
+    }
+
+    /**
+     * Gives back the storage an abandoned node took for its output: pooled buffers and scratch files.
+     */
+    void release(BufferPool pool) {
+        if (product != null) product.release();
+        if (fused != null) pool.give(fused.getResult());
+        if (tiled != null) tiled.getResult().delete();
+        for (SharedMatrix copy : scratch) {
+            copy.recycle(pool);
+        }
+    }
+
+    /**
+     * Reports this node to the metrics; call once, after its last task has finished.
+     */
+    void record() {
+        metrics.recordNode(new NodeSample(type, rows, cols, tasks.size(), flops, bytesMoved,
+                System.nanoTime() - startedNanos, queuedNanos.sum(), executingNanos.sum()), event);
+    }
+
+    Throwable getFailure() {
+        return failure;
+    }
+
+    void fail(Throwable t) {
+        if (failure == null) failure = t;
+    }
+
+    /**
+     * Resolves the node with its result. Row-wise results stay in the operand's storage.
+     */
+    void resolve() {
+        if (tiled != null) node.resolve(tiled.getResult());
+        else if (product != null) node.resolve(flat(product.getFlatResult(), product.numRows(), product.numCols()));
+        else if (strassen != null) node.resolve(strassen.getResult());
+        else if (fused != null) node.resolve(flat(fused.getResult(), fused.numRows(), fused.numCols()));
+        else if (sparse != null && !sparse.hasSparseResult()) node.resolve(sparse.getDenseResult());
+        else if (sparse != null) {
+            // a product or sum can fill in; keep it sparse only while that still pays off
+            SparseMatrix result = sparse.getSparseResult();
+            if (result.density() <= SparseMatrix.SPARSE_DENSITY) node.resolve(result);
+            else node.resolve(result.toDense());
+        }
+        else node.resolve(left);
+    }
+
+    // adopts a flat row-major result as is
+    private static SharedMatrix flat(double[] data, int rows, int cols) {
+        SharedMatrix matrix = new SharedMatrix();
+        matrix.loadFlat(data, rows, cols, VectorOrientation.ROW_MAJOR);
+        return matrix;
+    }
+}
@@ -0,0 +1,95 @@
+package spl.lae;
+
+import memory.SharedMatrix;
+import memory.SparseMatrix;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Computed matrices (SharedMatrix or SparseMatrix) by subtree key, evicted least-recently-used first once the stored
+ * elements exceed the byte budget. Cached matrices are shared with every node resolved
+ * from them, so they must only ever be read.
+ */
+class ResultCache {
+
+    record Key(long high, long low) implements Comparable<Key> {
+        @Override
+        public int compareTo(Key o) {
+            int c = Long.compare(high, o.high);
+            return c != 0 ? c : Long.compare(low, o.low);
+        }
+    }
+
+    private final LinkedHashMap<Key, Object> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long capacityBytes;
+    private long bytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    ResultCache(long capacityBytes) {
+        this.capacityBytes = capacityBytes;
+    }
+
+    synchronized boolean isEnabled() {
+        return capacityBytes > 0;
+    }
+
+    /**
+     * The cached SharedMatrix or SparseMatrix, or null.
+     */
+    synchronized Object get(Key key) {
+        Object matrix = entries.get(key);
+        if (matrix != null) hits++;
+        else misses++;
+        return matrix;
+    }
+
+    /**
+     * Remembers matrix under key; returns whether the cache now holds this very matrix,
+     * in which case it must never be written again.
+     */
+    synchronized boolean put(Key key, SharedMatrix matrix) {
+        return insert(key, matrix);
+    }
+
+    synchronized boolean put(Key key, SparseMatrix matrix) {
+        return insert(key, matrix);
+    }
+
+    private boolean insert(Key key, Object matrix) {
+        long size = sizeOf(matrix);
+        if (size > capacityBytes || entries.containsKey(key)) return false;
+        entries.put(key, matrix);
+        bytes += size;
+        evict();
+        return true;
+    }
+
+    synchronized void setCapacity(long capacityBytes) {
+        this.capacityBytes = Math.max(capacityBytes, 0);
+        evict();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Key, Object>> it = entries.entrySet().iterator();
+        while (bytes > capacityBytes && it.hasNext()) {
+            bytes -= sizeOf(it.next().getValue());
+            it.remove();
+            evictions++;
+        }
+    }
+
+    private static long sizeOf(Object matrix) {
+        if (matrix instanceof SparseMatrix sparse) return sparse.sizeInBytes();
+        SharedMatrix dense = (SharedMatrix) matrix;
+        return (long) dense.numRows() * dense.numCols() * Double.BYTES;
+    }
+
+    synchronized String getReport() {
+        return String.format("--- Result Cache ---\nEntries: %d | Bytes: %d / %d | Hits: %d | Misses: %d | Evictions: %d\n",
+                entries.size(), bytes, capacityBytes, hits, misses, evictions);
+    }
+}
@@ -0,0 +1,79 @@
+package spl.lae;
+
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 128-bit content keys for computation subtrees. A MATRIX leaf is hashed by its shape and
+ * the exact bits of every element; an operation by its type, sign flag and its operands' keys.
+ * ADD operands are combined in sorted order, so A + B and B + A share a key.
+ */
+class SubtreeHasher {
+
+    private static final long SEED_HIGH = 0x9E3779B97F4A7C15L;
+    private static final long SEED_LOW = 0xD6E8FEB86659FD93L;
+
+    private final Map<ComputationNode, ResultCache.Key> keys = new IdentityHashMap<>();
+
+    /**
+     * Keys for every node under root, operation nodes and leaves alike.
+     */
+    Map<ComputationNode, ResultCache.Key> hashAll(ComputationNode root) {
+        hash(root);
+        return keys;
+    }
+
+    private ResultCache.Key hash(ComputationNode node) {
+        ResultCache.Key known = keys.get(node);
+        if (known != null) return known;
+        ResultCache.Key key = node.getNodeType() == ComputationNodeType.MATRIX ? hashLeaf(node) : hashOperation(node);
+        keys.put(node, key);
+        return key;
+    }
+
+    private static ResultCache.Key hashLeaf(ComputationNode node) {
+        int[] shape = node.getMatrixShape();
+        long high = mix(SEED_HIGH ^ shape[0]) + shape[1];
+        long low = mix(SEED_LOW ^ shape[1]) + shape[0];
+        double[] row = new double[shape[1]];
+        for (int i = 0; i < shape[0]; i++) {
+            node.readRow(i, row);
+            for (double value : row) {
+                long bits = Double.doubleToRawLongBits(value);
+                high = high * SEED_HIGH + mix(bits);
+                low = Long.rotateLeft(low, 23) * SEED_LOW ^ mix(bits ^ SEED_LOW);
+            }
+        }
+        return new ResultCache.Key(mix(high), mix(low));
+    }
+
+    private ResultCache.Key hashOperation(ComputationNode node) {
+        List<ResultCache.Key> operands = new ArrayList<>();
+        for (ComputationNode child : node.getChildren()) {
+            operands.add(hash(child));
+        }
+        if (node.getNodeType() == ComputationNodeType.ADD) {
+            operands.sort(null);
+        }
+        long tag = node.getNodeType().ordinal() * 2L + (node.isNegated() ? 1 : 0);
+        long high = mix(SEED_HIGH ^ tag);
+        long low = mix(SEED_LOW + tag);
+        for (ResultCache.Key operand : operands) {
+            high = mix(high * SEED_HIGH + operand.high());
+            low = mix(Long.rotateLeft(low, 23) ^ operand.low());
+        }
+        return new ResultCache.Key(high, low);
+    }
+
+    // splitmix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
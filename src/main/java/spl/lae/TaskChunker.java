@@ -0,0 +1,141 @@
+package spl.lae;
+
+import scheduling.CostedTask;
+import scheduling.ThroughputModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+
+/**
+ * Splits row-wise work into row-range chunks large enough to amortize the dispatch cost
+ * of TiredExecutor.submit, while still leaving a few chunks per worker for balancing.
+ * Per-element cost is learned per operation label from the chunks that have already run.
+ * <p>
+ * With an executor that measures its workers (ADAPTIVE mode), every worker gets the same
+ * number of chunks but each chunk's size follows that worker's measured speed on the
+ * operation, so all workers should reach the end of the node at about the same time.
+ */
+class TaskChunker {
+
+    private static final long TARGET_CHUNK_NANOS = 50_000; // well above the cost of one dispatch
+    private static final int CHUNKS_PER_WORKER = 4;
+    private static final double INITIAL_NANOS_PER_ELEMENT = 1.0;
+    private static final double SMOOTHING = 0.2; // weight of the newest measurement
+
+    private final int numWorkers;
+    private final ThroughputModel throughput; // null: chunks are all the same size and go to any worker
+    private final Map<String, OpStats> stats = new TreeMap<>();
+
+    /**
+     * Work over the half-open row range [from, to).
+     */
+    interface RowRange {
+        void run(int from, int to);
+    }
+
+    private static class OpStats {
+        double nanosPerElement = INITIAL_NANOS_PER_ELEMENT;
+        long tasks = 0;
+        long nodes = 0;
+        int lastChunkRows = 0;
+    }
+
+    TaskChunker(int numWorkers) {
+        this(numWorkers, null);
+    }
+
+    TaskChunker(int numWorkers, ThroughputModel throughput) {
+        this.numWorkers = numWorkers;
+        this.throughput = throughput;
+    }
+
+    /**
+     * Returns one task per row range; each task calls rowTask for every row in its range.
+     */
+    List<Runnable> chunk(String operation, int numRows, int rowWidth, IntConsumer rowTask) {
+        return chunkRanges(operation, numRows, rowWidth, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                rowTask.accept(i);
+            }
+        });
+    }
+
+    /**
+     * Returns one task per row range; each task hands its whole range to rangeTask.
+     */
+    synchronized List<Runnable> chunkRanges(String operation, int numRows, int rowWidth, RowRange rangeTask) {
+        OpStats op = stats.computeIfAbsent(operation, t -> new OpStats());
+        int chunkRows = chunkRows(op.nanosPerElement, numRows, rowWidth);
+        op.lastChunkRows = chunkRows;
+        op.nodes++;
+
+        List<Runnable> tasks = new ArrayList<>();
+        int chunks = (numRows + chunkRows - 1) / chunkRows;
+        if (throughput != null && numWorkers > 1 && chunks >= numWorkers) {
+            addBySpeed(tasks, operation, op, numRows, rowWidth, chunks / numWorkers, rangeTask);
+        }
+        else {
+            for (int start = 0; start < numRows; start += chunkRows) {
+                tasks.add(rangeTask(operation, op, start, Math.min(start + chunkRows, numRows), -1, rowWidth, rangeTask));
+            }
+        }
+        op.tasks += tasks.size();
+        return tasks;
+    }
+
+    // Worker w gets a share of the rows proportional to its relative speed, in chunksPerWorker chunks.
+    private void addBySpeed(List<Runnable> tasks, String operation, OpStats op, int numRows, int rowWidth,
+                            int chunksPerWorker, RowRange rangeTask) {
+        double[] speeds = throughput.relativeSpeeds(operation);
+        double total = 0;
+        for (double s : speeds) total += s;
+        double cumulative = 0;
+        int start = 0;
+        for (int w = 0; w < numWorkers; w++) {
+            cumulative += speeds[w];
+            int end = w == numWorkers - 1 ? numRows : (int) Math.round(numRows * cumulative / total);
+            for (int c = 0; c < chunksPerWorker; c++) {
+                int from = start + (int) ((long) (end - start) * c / chunksPerWorker);
+                int to = start + (int) ((long) (end - start) * (c + 1) / chunksPerWorker);
+                if (to > from) tasks.add(rangeTask(operation, op, from, to, w, rowWidth, rangeTask));
+            }
+            start = end;
+        }
+    }
+
+    private Runnable rangeTask(String operation, OpStats op, int from, int to, int worker, int rowWidth, RowRange rangeTask) {
+        long elements = (long) (to - from) * Math.max(rowWidth, 1);
+        Runnable task = () -> {
+            long begin = System.nanoTime();
+            rangeTask.run(from, to);
+            record(op, System.nanoTime() - begin, elements);
+        };
+        return throughput == null ? task : new CostedTask(operation, elements, worker, task);
+    }
+
+    private int chunkRows(double nanosPerElement, int numRows, int rowWidth) {
+        double nanosPerRow = Math.max(nanosPerElement * Math.max(rowWidth, 1), 1e-3);
+        long byCost = (long) Math.ceil(TARGET_CHUNK_NANOS / nanosPerRow);
+        long byBalance = (numRows + (long) numWorkers * CHUNKS_PER_WORKER - 1) / ((long) numWorkers * CHUNKS_PER_WORKER);
+        long rows = Math.max(byCost, byBalance);
+        return (int) Math.max(1, Math.min(rows, Math.max(numRows, 1)));
+    }
+
+    private synchronized void record(OpStats op, long nanos, long elements) {
+        double measured = (double) nanos / elements;
+        op.nanosPerElement = (1 - SMOOTHING) * op.nanosPerElement + SMOOTHING * measured;
+    }
+
+    synchronized String getReport() {
+        StringBuilder report = new StringBuilder("--- Chunking ---\n");
+        for (Map.Entry<String, OpStats> e : stats.entrySet()) {
+            OpStats op = e.getValue();
+            report.append(String.format("Op: %s | Nodes: %d | Tasks: %d | Last chunk: %d rows | Cost: %.2f ns/elem\n",
+                    e.getKey(), op.nodes, op.tasks, op.lastChunkRows, op.nanosPerElement));
+        }
+        return report.toString();
+    }
+}
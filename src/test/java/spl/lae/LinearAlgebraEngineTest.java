@@ -0,0 +1,112 @@
+package spl.lae;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+
+class LinearAlgebraEngineTest {
+
+    private static final int N = 20;
+
+    private final LinearAlgebraEngine engine = new LinearAlgebraEngine(4);
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        engine.shutdown();
+    }
+
+    // *(T(+(S1, S2)), E): two sparse leaves whose sum fills in and comes back dense, so the lone
+    // TRANSPOSE reads a dead operand that must not be handed to the pool while the product reads it
+    @Test
+    void transposeOfDenseSparseSumFeedsProduct() {
+        double[][] s1 = new double[N][N];
+        double[][] s2 = new double[N][N];
+        double[][] e = new double[N][N];
+        for (int i = 0; i < N; i++) {
+            s1[i][i] = i + 1;
+            s2[i][(i + 1) % N] = -(i + 2);
+            for (int j = 0; j < N; j++) {
+                e[i][j] = (i * 7 + j * 3) % 11 - 5;
+            }
+        }
+        double[][] sum = new double[N][N];
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                sum[i][j] = s1[i][j] + s2[i][j];
+            }
+        }
+        double[][] expected = new double[N][N];
+        for (int i = 0; i < N; i++) {
+            for (int k = 0; k < N; k++) {
+                for (int j = 0; j < N; j++) {
+                    expected[i][j] += sum[k][i] * e[k][j];
+                }
+            }
+        }
+
+        for (int run = 0; run < 3; run++) {
+            ComputationNode root = node(ComputationNodeType.MULTIPLY,
+                    node(ComputationNodeType.TRANSPOSE,
+                            node(ComputationNodeType.ADD, new ComputationNode(s1), new ComputationNode(s2))),
+                    new ComputationNode(e));
+            double[][] result = engine.run(root).getMatrix();
+            for (int i = 0; i < N; i++) {
+                assertArrayEquals(expected[i], result[i], 0.0, "row " + i + " of run " + run);
+            }
+        }
+    }
+
+    // odd sides above the cutoff: padded to 260 and 304 for two levels of recursion
+    @Test
+    void strassenMatchesClassicProduct() {
+        Random random = new Random(18);
+        engine.setResultCacheBytes(0); // the second product would otherwise be a cache hit
+        for (int n : new int[] {257, 301}) {
+            double[][] a = randomMatrix(random, n);
+            double[][] b = randomMatrix(random, n);
+
+            engine.setStrassenCutoff(0);
+            double[][] classic = engine.run(node(ComputationNodeType.MULTIPLY,
+                    new ComputationNode(a), new ComputationNode(b))).getMatrix();
+            engine.setStrassenCutoff(128);
+            double[][] strassen = engine.run(node(ComputationNodeType.MULTIPLY,
+                    new ComputationNode(a), new ComputationNode(b))).getMatrix();
+            assertTrue(engine.getWorkerReport().contains("--- Strassen ---"), "Strassen did not run for n = " + n);
+
+            double diff = 0;
+            double norm = 0;
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    double d = strassen[i][j] - classic[i][j];
+                    diff += d * d;
+                    norm += classic[i][j] * classic[i][j];
+                }
+            }
+            double relativeError = Math.sqrt(diff / norm);
+            assertTrue(relativeError < 1e-12, "n = " + n + ": relative error " + relativeError);
+        }
+    }
+
+    private static double[][] randomMatrix(Random random, int n) {
+        double[][] m = new double[n][n];
+        for (double[] row : m) {
+            for (int j = 0; j < n; j++) {
+                row[j] = random.nextDouble() * 2 - 1;
+            }
+        }
+        return m;
+    }
+
+    private static ComputationNode node(ComputationNodeType type, ComputationNode... children) {
+        return new ComputationNode(type, new ArrayList<>(List.of(children)));
+    }
+}